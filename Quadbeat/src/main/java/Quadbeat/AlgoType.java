@@ -2,5 +2,7 @@ package Quadbeat;
 
 public enum AlgoType {
     BFS,
-    DIJKSTRA
+    DIJKSTRA,
+    PPR,
+    ANN
 } 
\ No newline at end of file
@@ -0,0 +1,39 @@
+package Quadbeat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Body of POST /recommend/batch: the entries to answer, and the limit for those without one. */
+public class BatchRecommendationRequest {
+    private List<Entry> requests = new ArrayList<>();
+    private int limit = 10;
+
+    public BatchRecommendationRequest() {}
+    public List<Entry> getRequests() { return requests; }
+    public void setRequests(List<Entry> requests) { this.requests = requests; }
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+
+    /** A seed (a song id, or a mood for MOOD_BASED) on a graph with an algorithm, as GET /recommend takes. */
+    public static class Entry {
+        private String songId;
+        private GraphType graphType;
+        private AlgoType algorithm;
+        private Integer limit;
+
+        public Entry() {}
+        public Entry(String songId, GraphType graphType, AlgoType algorithm) {
+            this.songId = songId;
+            this.graphType = graphType;
+            this.algorithm = algorithm;
+        }
+        public String getSongId() { return songId; }
+        public void setSongId(String songId) { this.songId = songId; }
+        public GraphType getGraphType() { return graphType; }
+        public void setGraphType(GraphType graphType) { this.graphType = graphType; }
+        public AlgoType getAlgorithm() { return algorithm; }
+        public void setAlgorithm(AlgoType algorithm) { this.algorithm = algorithm; }
+        public Integer getLimit() { return limit; }
+        public void setLimit(Integer limit) { this.limit = limit; }
+    }
+}
@@ -0,0 +1,35 @@
+package Quadbeat;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/** The answer to one batch entry: its recommendations, or why there are none. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchRecommendationResult {
+    private String songId;
+    private GraphType graphType;
+    private AlgoType algorithm;
+    private List<RecommendationDto> recommendations;
+    private String error;
+
+    public BatchRecommendationResult() {}
+    public BatchRecommendationResult(String songId, GraphType graphType, AlgoType algorithm,
+                                     List<RecommendationDto> recommendations, String error) {
+        this.songId = songId;
+        this.graphType = graphType;
+        this.algorithm = algorithm;
+        this.recommendations = recommendations;
+        this.error = error;
+    }
+    public String getSongId() { return songId; }
+    public void setSongId(String songId) { this.songId = songId; }
+    public GraphType getGraphType() { return graphType; }
+    public void setGraphType(GraphType graphType) { this.graphType = graphType; }
+    public AlgoType getAlgorithm() { return algorithm; }
+    public void setAlgorithm(AlgoType algorithm) { this.algorithm = algorithm; }
+    public List<RecommendationDto> getRecommendations() { return recommendations; }
+    public void setRecommendations(List<RecommendationDto> recommendations) { this.recommendations = recommendations; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,21 @@
+package Quadbeat;
+
+/** Thrown when a request needs a graph that is still being built. */
+public class GraphNotReadyException extends RuntimeException {
+    private final GraphType graphType;
+    private final double progress;
+
+    public GraphNotReadyException(GraphType graphType, double progress) {
+        super("The " + graphType + " graph is still building (" + Math.round(progress * 100) + "% done)");
+        this.graphType = graphType;
+        this.progress = progress;
+    }
+
+    public GraphType getGraphType() {
+        return graphType;
+    }
+
+    public double getProgress() {
+        return progress;
+    }
+}
@@ -0,0 +1,11 @@
+package Quadbeat;
+
+/** How a MOOD_BASED request picks the songs its traversal starts from. */
+public enum MoodSeedPolicy {
+    // The most popular song with the mood
+    MOST_POPULAR,
+    // The quadbeat.mood.seed-count most popular songs, traversed from together
+    TOP_N,
+    // One song picked at random, weighted by popularity; responses are not cached
+    WEIGHTED_RANDOM
+}
@@ -0,0 +1,143 @@
+package Quadbeat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded LRU cache of finished recommendation lists, so hot seeds can be answered
+ * without traversing the graph again until the dataset changes.
+ *
+ * A BFS or Dijkstra traversal that stops after `limit` results returns a prefix of the one
+ * that stops after more, so one entry per seed serves every limit up to the one it was
+ * computed with. PPR and ANN lists are not prefixes of longer ones: PPR walks for a time
+ * budget and ANN keeps more candidates for a larger limit, so their entries serve only the
+ * limit they were computed with.
+ */
+public class RecommendationCache {
+
+    public enum Mode {
+        // No caching
+        OFF,
+        // Cache each result the first time it is requested
+        LAZY,
+        // Compute every song's results when the service starts, then behave like LAZY
+        EAGER
+    }
+
+    // limit is 0 for algorithms whose entries serve every shorter limit
+    private record Key(String seed, GraphType graphType, AlgoType algoType, int limit) {
+        static Key of(String seed, GraphType graphType, AlgoType algoType, int limit) {
+            boolean prefixes = algoType == AlgoType.BFS || algoType == AlgoType.DIJKSTRA;
+            return new Key(seed, graphType, algoType, prefixes ? 0 : limit);
+        }
+    }
+
+    // A list shorter than its limit holds every result the traversal can produce
+    private record Entry(int limit, List<RecommendationDto> recommendations) {
+        boolean covers(int requested) {
+            return requested <= limit || recommendations.size() < limit;
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    // A lock rather than a monitor: a virtual thread blocked on a monitor pins its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Bumped by clear(), so lists computed before the catalog changed are not stored
+    private long generation;
+
+    public RecommendationCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > RecommendationCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns the first `limit` cached results, or null (counted as a miss) if they are not cached. */
+    public List<RecommendationDto> get(String seed, GraphType graphType, AlgoType algoType, int limit) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.get(Key.of(seed, graphType, algoType, limit));
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null || !entry.covers(limit)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        List<RecommendationDto> cached = entry.recommendations();
+        return cached.size() > limit ? cached.subList(0, limit) : cached;
+    }
+
+    public void put(String seed, GraphType graphType, AlgoType algoType, int limit,
+                    List<RecommendationDto> recommendations) {
+        put(seed, graphType, algoType, limit, recommendations, getGeneration());
+    }
+
+    /** Stores the list unless the cache has been cleared since generation was read. */
+    public void put(String seed, GraphType graphType, AlgoType algoType, int limit,
+                    List<RecommendationDto> recommendations, long generation) {
+        Key key = Key.of(seed, graphType, algoType, limit);
+        Entry entry = new Entry(limit, List.copyOf(recommendations));
+        lock.lock();
+        try {
+            if (generation != this.generation) {
+                return;
+            }
+            Entry existing = entries.get(key);
+            if (existing == null || !existing.covers(limit)) {
+                entries.put(key, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxEntries() { return maxEntries; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+}
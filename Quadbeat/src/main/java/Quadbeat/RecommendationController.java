@@ -1,49 +1,149 @@
 package  Quadbeat;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.Map;
 
 @RestController
 public class RecommendationController {
+    private static final Logger log = LoggerFactory.getLogger(RecommendationController.class);
+
     @Autowired
     private RecommendationService recommendationService;
 
     @GetMapping("/recommend")
-    public ResponseEntity<List<RecommendationDto>> recommend(
+    public ResponseEntity<?> recommend(
             @RequestParam String songId,
             @RequestParam GraphType graphType,
-            @RequestParam AlgoType algorithm) {
+            @RequestParam AlgoType algorithm,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            return invalidLimit(limit);
+        }
         long start = System.currentTimeMillis();
-        System.out.println("Selected algorithm: " + algorithm);
-        System.out.println("Graph type: " + graphType);
-        
-        // Get recommendations and limit to 10 items
-        List<RecommendationDto> recommendations = recommendationService.recommend(songId, graphType, algorithm)
-            .stream()
-            .limit(10)
-            .collect(Collectors.toList());
+
+        // The traversal stops as soon as it has found `limit` distinct songs
+        List<RecommendationDto> recommendations = recommendationService.recommend(songId, graphType, algorithm, limit);
         
-        long end = System.currentTimeMillis();
-        System.out.println("Time taken: " + (end - start) + " ms");
+        log.debug("{} on {} for {} took {} ms", algorithm, graphType, songId, System.currentTimeMillis() - start);
         return ResponseEntity.ok(recommendations);
     }
 
+    // Many /recommend requests in one round trip; results come back in entry order
+    @PostMapping("/recommend/batch")
+    public ResponseEntity<?> recommendBatch(@RequestBody BatchRecommendationRequest request) {
+        try {
+            return ResponseEntity.ok(recommendationService.recommendBatch(request.getRequests(), request.getLimit()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Continues a playlist: one traversal from all of songIds, candidates scored across them
+    @GetMapping("/recommend/playlist")
+    public ResponseEntity<?> recommendPlaylist(
+            @RequestParam List<String> songIds,
+            @RequestParam GraphType graphType,
+            @RequestParam AlgoType algorithm,
+            @RequestParam(defaultValue = "SUM") SeedAggregation aggregation,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            return invalidLimit(limit);
+        }
+        try {
+            return ResponseEntity.ok(recommendationService.recommendPlaylist(songIds, graphType, algorithm,
+                    aggregation, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // How many of each song's k heaviest graph neighbors ANN finds, and at what cost
+    @GetMapping("/ann/recall")
+    public ResponseEntity<?> annRecall(
+            @RequestParam(defaultValue = "SONG_BASED") GraphType graphType,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(defaultValue = "200") int samples,
+            @RequestParam(defaultValue = "0") int ef) {
+        try {
+            return ResponseEntity.ok(recommendationService.annRecall(graphType, k, samples, ef));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> invalidLimit(int limit) {
+        return ResponseEntity.badRequest().body(Map.of("error", "limit must be at least 1, got " + limit));
+    }
+
+    @PostMapping("/songs")
+    public ResponseEntity<?> addSong(@RequestBody SongDto song) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(recommendationService.addSong(song));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/songs/{songId}")
+    public ResponseEntity<?> removeSong(@PathVariable String songId) {
+        if (recommendationService.removeSong(songId)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Song not found: " + songId));
+    }
+
+    @PostMapping("/reload")
+    public ResponseEntity<?> reload(@RequestParam(defaultValue = "false") boolean force) {
+        try {
+            return ResponseEntity.ok(recommendationService.reload(force));
+        } catch (IllegalStateException e) {
+            log.error("Reload error: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // 200 once every graph is built, 503 while any is still building
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        Map<String, Object> readiness = recommendationService.getReadiness();
+        HttpStatus status = Boolean.TRUE.equals(readiness.get("ready")) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(readiness);
+    }
+
+    @ExceptionHandler(GraphNotReadyException.class)
+    public ResponseEntity<Map<String, Object>> graphNotReady(GraphNotReadyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", e.getMessage(), "graphType", e.getGraphType(), "progress", e.getProgress()));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(recommendationService.getCacheStats());
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<?> searchSongs(@RequestParam String query) {
+    public ResponseEntity<?> searchSongs(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "false") boolean prefix,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            System.out.println("Searching for: " + query);
-            List<RecommendationDto> results = recommendationService.searchSongs(query);
+            // prefix=true matches titles and artists that start with the query, for type-ahead
+            List<RecommendationDto> results = recommendationService.searchSongs(query, prefix, limit);
             if (results.isEmpty()) {
                 return ResponseEntity.ok()
                     .body(Map.of("message", "No songs found matching your search"));
             }
             return ResponseEntity.ok(results);
         } catch (Exception e) {
-            System.err.println("Search error: " + e.getMessage());
+            log.warn("Search error for '{}'", query, e);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Failed to search songs: " + e.getMessage()));
         }
@@ -0,0 +1,187 @@
+package Quadbeat;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import model.Graph;
+import model.GraphBuilder;
+import model.ScratchPool;
+import model.TraversalListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters for graph builds, recommendations, batches, playlists, traversals, searches and the cache,
+ * served by Actuator under /actuator/metrics. Latency timers publish p50, p99 and p99.9
+ * along with a histogram. Meters are registered once and looked up by graph and algorithm
+ * ordinal, so recording one is a few array reads.
+ *
+ * The graph and cache meters read whichever catalog is current, so the cache counters
+ * start again from zero when a reload publishes a new catalog.
+ */
+public class RecommendationMetrics implements TraversalListener {
+    private final Timer[][] recommendLatency;
+    private final DistributionSummary[][] expanded;
+    private final DistributionSummary[][] offered;
+    private final DistributionSummary[][] accepted;
+    private final Timer[] buildDuration;
+    private final Timer substringSearch;
+    private final Timer prefixSearch;
+    private final Timer batchLatency;
+    private final DistributionSummary batchSize;
+    private final Timer playlistLatency;
+    private final DistributionSummary playlistSize;
+    private final MeterRegistry registry;
+    // Meters only hold their state objects weakly, so the suppliers they read are kept here
+    private Supplier<GraphBuilder> graphBuilder = () -> null;
+    private Supplier<RecommendationCache> cache = () -> null;
+    private ScratchPool scratchPool;
+
+    public RecommendationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        GraphType[] graphTypes = GraphType.values();
+        AlgoType[] algoTypes = AlgoType.values();
+        recommendLatency = new Timer[graphTypes.length][algoTypes.length];
+        expanded = new DistributionSummary[graphTypes.length][algoTypes.length];
+        offered = new DistributionSummary[graphTypes.length][algoTypes.length];
+        accepted = new DistributionSummary[graphTypes.length][algoTypes.length];
+        buildDuration = new Timer[graphTypes.length];
+        for (GraphType graphType : graphTypes) {
+            String graph = graphType.name();
+            for (AlgoType algoType : algoTypes) {
+                String algorithm = algoType.name();
+                recommendLatency[graphType.ordinal()][algoType.ordinal()] = latency("quadbeat.recommend.latency")
+                        .description("Time to answer a recommendation request, cache hits included")
+                        .tags("graph", graph, "algorithm", algorithm)
+                        .register(registry);
+                expanded[graphType.ordinal()][algoType.ordinal()] = DistributionSummary.builder("quadbeat.traversal.expanded")
+                        .description("Nodes whose edges a traversal scanned")
+                        .tags("graph", graph, "algorithm", algorithm)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(registry);
+                offered[graphType.ordinal()][algoType.ordinal()] = DistributionSummary.builder("quadbeat.traversal.results")
+                        .description("Songs a traversal produced, before and after the duplicate filter")
+                        .tags("graph", graph, "algorithm", algorithm, "stage", "before-filter")
+                        .register(registry);
+                accepted[graphType.ordinal()][algoType.ordinal()] = DistributionSummary.builder("quadbeat.traversal.results")
+                        .description("Songs a traversal produced, before and after the duplicate filter")
+                        .tags("graph", graph, "algorithm", algorithm, "stage", "after-filter")
+                        .register(registry);
+            }
+            buildDuration[graphType.ordinal()] = Timer.builder("quadbeat.graph.build")
+                    .description("Time to build a graph from the song table")
+                    .tags("graph", graph)
+                    .register(registry);
+        }
+        substringSearch = latency("quadbeat.search.latency").description("Time to answer a search")
+                .tags("mode", "substring").register(registry);
+        prefixSearch = latency("quadbeat.search.latency").description("Time to answer a search")
+                .tags("mode", "prefix").register(registry);
+        batchLatency = latency("quadbeat.recommend.batch.latency")
+                .description("Time to answer a whole /recommend/batch request").register(registry);
+        batchSize = DistributionSummary.builder("quadbeat.recommend.batch.size")
+                .description("Entries in a /recommend/batch request")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        playlistLatency = latency("quadbeat.recommend.playlist.latency")
+                .description("Time to answer a /recommend/playlist request").register(registry);
+        playlistSize = DistributionSummary.builder("quadbeat.recommend.playlist.size")
+                .description("Song ids in a /recommend/playlist request")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+    }
+
+    private static Timer.Builder latency(String name) {
+        return Timer.builder(name)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10));
+    }
+
+    /** Edge counts of each graph and the song count of the current catalog. */
+    public void gaugeGraphs(Supplier<GraphBuilder> graphBuilder) {
+        this.graphBuilder = graphBuilder;
+        for (GraphType graphType : GraphType.values()) {
+            GraphBuilder.GraphType type = GraphBuilder.GraphType.valueOf(graphType.name());
+            Gauge.builder("quadbeat.graph.edges", this, metrics -> {
+                        Graph graph = metrics.graphBuilder.get().getGraph(type);
+                        return graph == null ? Double.NaN : graph.edgeCount();
+                    })
+                    .description("Undirected edges in the graph; a jump means the dataset got denser")
+                    .tags("graph", graphType.name())
+                    .register(registry);
+        }
+        Gauge.builder("quadbeat.catalog.songs", this, metrics -> metrics.graphBuilder.get().getSongCount())
+                .description("Songs in the current catalog")
+                .register(registry);
+    }
+
+    /** Hits, misses, evictions, hit ratio and size of the current cache, if there is one. */
+    public void gaugeCache(Supplier<RecommendationCache> cache) {
+        this.cache = cache;
+        FunctionCounter.builder("quadbeat.cache.requests", this, metrics -> metrics.cacheStat(RecommendationCache::getHits))
+                .description("Cache lookups").tags("result", "hit").register(registry);
+        FunctionCounter.builder("quadbeat.cache.requests", this, metrics -> metrics.cacheStat(RecommendationCache::getMisses))
+                .description("Cache lookups").tags("result", "miss").register(registry);
+        FunctionCounter.builder("quadbeat.cache.evictions", this, metrics -> metrics.cacheStat(RecommendationCache::getEvictions))
+                .description("Lists evicted to stay within the size limit").register(registry);
+        Gauge.builder("quadbeat.cache.hit.ratio", this, metrics -> {
+                    double hits = metrics.cacheStat(RecommendationCache::getHits);
+                    double lookups = hits + metrics.cacheStat(RecommendationCache::getMisses);
+                    return lookups == 0 ? Double.NaN : hits / lookups;
+                })
+                .description("Fraction of lookups served from the cache").register(registry);
+        Gauge.builder("quadbeat.cache.size", this, metrics -> metrics.cacheStat(RecommendationCache::size))
+                .description("Lists in the cache").register(registry);
+    }
+
+    /** Traversal scratch spaces created so far, and how many there may be. */
+    public void gaugeScratchPool(ScratchPool scratchPool) {
+        this.scratchPool = scratchPool;
+        Gauge.builder("quadbeat.traversal.scratch.created", this, metrics -> metrics.scratchPool.getCreated())
+                .description("Traversal scratch spaces allocated; at most the pool capacity").register(registry);
+        Gauge.builder("quadbeat.traversal.scratch.capacity", this, metrics -> metrics.scratchPool.getCapacity())
+                .description("Most traversal scratch spaces the pool will allocate").register(registry);
+    }
+
+    private double cacheStat(ToDoubleFunction<RecommendationCache> stat) {
+        RecommendationCache current = cache.get();
+        return current == null ? 0 : stat.applyAsDouble(current);
+    }
+
+    public void recordRecommendation(GraphType graphType, AlgoType algoType, long nanos) {
+        recommendLatency[graphType.ordinal()][algoType.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBuild(GraphType graphType, long millis) {
+        buildDuration[graphType.ordinal()].record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordBatch(int entries, long nanos) {
+        batchSize.record(entries);
+        batchLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPlaylist(int songs, long nanos) {
+        playlistSize.record(songs);
+        playlistLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSearch(boolean prefix, long nanos) {
+        (prefix ? prefixSearch : substringSearch).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onTraversal(GraphBuilder.GraphType type, GraphBuilder.AlgoType algorithm, int expandedNodes,
+                            int offeredSongs, int acceptedSongs, long nanos) {
+        expanded[type.ordinal()][algorithm.ordinal()].record(expandedNodes);
+        offered[type.ordinal()][algorithm.ordinal()].record(offeredSongs);
+        accepted[type.ordinal()][algorithm.ordinal()].record(acceptedSongs);
+    }
+}
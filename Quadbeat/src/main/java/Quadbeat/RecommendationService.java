@@ -1,160 +1,863 @@
 package Quadbeat;
 
 import model.GraphBuilder;
+import model.GraphSnapshot;
+import model.MoodIndex;
+import model.Recommendation;
+import model.ScratchPool;
 import model.Song;
+import model.SongTable;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
 
 @Service
 public class RecommendationService {
-    private final GraphBuilder graphBuilder;
+    private static final Logger log = LoggerFactory.getLogger(RecommendationService.class);
 
-    public RecommendationService() {
-        this.graphBuilder = new GraphBuilder();
-        System.out.println("Initializing RecommendationService...");
-        graphBuilder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
-        graphBuilder.buildSongBasedGraph();
-        graphBuilder.buildArtistBasedGraph();
-        graphBuilder.buildMoodBasedGraph();
-        System.out.println("Initialization complete.");
+    // Everything built from one version of the dataset. Requests read the current catalog
+    // once and finish on it, even if a reload publishes a newer one in the meantime.
+    // The songs are loaded before a catalog is created; each graph may still be building.
+    private static final class Catalog {
+        final GraphBuilder graphBuilder;
+        final RecommendationCache cache;
+        final long version;
+        final long checksum;
+        // Completes when that graph is built
+        final Map<GraphType, CompletableFuture<Void>> graphs;
+        final Map<GraphType, Long> buildMillis;
+        // Completes once every graph is built, the snapshot written and the cache warmed
+        final CompletableFuture<Void> ready;
+
+        Catalog(GraphBuilder graphBuilder, RecommendationCache cache, long version, long checksum,
+                Map<GraphType, CompletableFuture<Void>> graphs, Map<GraphType, Long> buildMillis,
+                CompletableFuture<Void> ready) {
+            this.graphBuilder = graphBuilder;
+            this.cache = cache;
+            this.version = version;
+            this.checksum = checksum;
+            this.graphs = graphs;
+            this.buildMillis = buildMillis;
+            this.ready = ready;
+        }
+    }
+
+    private final Path datasetPath;
+    private final Path snapshotPath;
+    private final double bfsMinWeight;
+    private final int bfsMaxDepth;
+    private final RecommendationCache.Mode cacheMode;
+    private final int cacheMaxEntries;
+    private final int cacheTopK;
+    private final Set<AlgoType> precomputeAlgorithms;
+    private final long graphWaitMillis;
+    private final MoodSeedPolicy moodSeedPolicy;
+    private final int moodSeedCount;
+    private final int batchMaxEntries;
+    private final double playlistDecay;
+    private final int pprWalks;
+    private final long pprBudgetMillis;
+    private final int annM;
+    private final int annEfConstruction;
+    private final int annEfSearch;
+    // Batch entries are answered here and on the request thread. Each worker keeps its own
+    // traversal scratch space from one batch to the next; a full queue runs the work inline.
+    private final ThreadPoolExecutor batchWorkers;
+    // Traversal working memory, shared by every catalog's graphs and bounded however many
+    // request threads (virtual ones included) are traversing at once
+    private final ScratchPool scratchPool;
+    // The three graphs of a catalog build side by side
+    private final ExecutorService graphBuilders = Executors.newFixedThreadPool(GraphType.values().length, runnable -> {
+        Thread thread = new Thread(runnable, "graph-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Reloads run one at a time, off the request threads
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dataset-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread watcher;
+    private final RecommendationMetrics metrics;
+    private volatile Catalog catalog;
+
+    public RecommendationService(@Value("${quadbeat.dataset.path:../Dataset/songs_dataset.csv}") String datasetPath,
+                                 @Value("${quadbeat.snapshot.path:}") String snapshotPath,
+                                 @Value("${quadbeat.dataset.watch:false}") boolean watchDataset,
+                                 @Value("${quadbeat.dataset.watch-quiet-ms:500}") long watchQuietMillis,
+                                 @Value("${quadbeat.bfs.min-weight:0.73}") double bfsMinWeight,
+                                 @Value("${quadbeat.bfs.max-depth:2147483647}") int bfsMaxDepth,
+                                 @Value("${quadbeat.cache.mode:off}") RecommendationCache.Mode cacheMode,
+                                 @Value("${quadbeat.cache.max-entries:10000}") int cacheMaxEntries,
+                                 @Value("${quadbeat.cache.top-k:10}") int cacheTopK,
+                                 @Value("${quadbeat.cache.precompute-algorithms:bfs,dijkstra}") Set<AlgoType> precomputeAlgorithms,
+                                 @Value("${quadbeat.startup.graph-wait-ms:2000}") long graphWaitMillis,
+                                 @Value("${quadbeat.mood.seed-policy:most-popular}") MoodSeedPolicy moodSeedPolicy,
+                                 @Value("${quadbeat.mood.seed-count:3}") int moodSeedCount,
+                                 @Value("${quadbeat.batch.threads:0}") int batchThreads,
+                                 @Value("${quadbeat.batch.max-entries:1000}") int batchMaxEntries,
+                                 @Value("${quadbeat.traversal.scratch-pool-size:0}") int scratchPoolSize,
+                                 @Value("${quadbeat.playlist.decay:0.8}") double playlistDecay,
+                                 @Value("${quadbeat.ppr.walks:2000}") int pprWalks,
+                                 @Value("${quadbeat.ppr.budget-ms:20}") long pprBudgetMillis,
+                                 @Value("${quadbeat.ann.m:16}") int annM,
+                                 @Value("${quadbeat.ann.ef-construction:100}") int annEfConstruction,
+                                 @Value("${quadbeat.ann.ef-search:64}") int annEfSearch,
+                                 MeterRegistry meterRegistry) {
+        this.datasetPath = Path.of(datasetPath);
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.bfsMinWeight = bfsMinWeight;
+        this.bfsMaxDepth = bfsMaxDepth;
+        this.cacheMode = cacheMode;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.cacheTopK = cacheTopK;
+        this.precomputeAlgorithms = precomputeAlgorithms.isEmpty() ? EnumSet.noneOf(AlgoType.class)
+                : EnumSet.copyOf(precomputeAlgorithms);
+        this.graphWaitMillis = graphWaitMillis;
+        this.moodSeedPolicy = moodSeedPolicy;
+        this.moodSeedCount = moodSeedCount;
+        this.batchMaxEntries = batchMaxEntries;
+        this.playlistDecay = playlistDecay;
+        this.pprWalks = pprWalks;
+        this.pprBudgetMillis = pprBudgetMillis;
+        this.annM = annM;
+        this.annEfConstruction = annEfConstruction;
+        this.annEfSearch = annEfSearch;
+        int workers = batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors();
+        this.batchWorkers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * 16), runnable -> {
+                    Thread thread = new Thread(runnable, "batch-recommend");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.scratchPool = new ScratchPool(scratchPoolSize > 0 ? scratchPoolSize
+                : 2 * Runtime.getRuntime().availableProcessors());
+        this.metrics = new RecommendationMetrics(meterRegistry);
+        log.info("Initializing RecommendationService");
+        this.catalog = loadCatalog(1);
+        metrics.gaugeGraphs(() -> catalog.graphBuilder);
+        metrics.gaugeCache(() -> catalog.cache);
+        metrics.gaugeScratchPool(scratchPool);
+        if (watchDataset) {
+            watcher = new Thread(() -> watchDataset(watchQuietMillis), "dataset-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            watcher = null;
+        }
+        log.info("Initialization complete");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        reloader.shutdownNow();
+        graphBuilders.shutdownNow();
+        batchWorkers.shutdownNow();
+    }
+
+    public long getDatasetVersion() {
+        return catalog.version;
+    }
+
+    // The current catalog. Within a web request its version goes in the X-Dataset-Version
+    // header, so clients learn which version answered them even if a reload published a
+    // newer one since; the last catalog read wins.
+    private Catalog catalog() {
+        Catalog current = catalog;
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes request
+                && request.getResponse() != null) {
+            request.getResponse().setHeader("X-Dataset-Version", String.valueOf(current.version));
+        }
+        return current;
+    }
+
+    /**
+     * Readiness of the current catalog: each graph's state, the fraction of it built so far
+     * and how long its build took. The catalog is ready once every graph is built.
+     */
+    public Map<String, Object> getReadiness() {
+        Catalog catalog = catalog();
+        Map<String, Object> graphs = new LinkedHashMap<>();
+        boolean ready = true;
+        for (GraphType graphType : GraphType.values()) {
+            CompletableFuture<Void> future = catalog.graphs.get(graphType);
+            Map<String, Object> graph = new LinkedHashMap<>();
+            if (future.isCompletedExceptionally()) {
+                graph.put("state", "FAILED");
+            } else if (future.isDone()) {
+                graph.put("state", "READY");
+            } else {
+                graph.put("state", "BUILDING");
+            }
+            graph.put("progress", catalog.graphBuilder.getBuildProgress(modelType(graphType)));
+            graph.put("buildMs", catalog.buildMillis.get(graphType));
+            graphs.put(graphType.name(), graph);
+            ready &= future.isDone() && !future.isCompletedExceptionally();
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        status.put("version", catalog.version);
+        status.put("songs", catalog.graphBuilder.getSongCount());
+        status.put("graphs", graphs);
+        return status;
+    }
+
+    /**
+     * Rebuilds the catalog from the dataset and publishes it. Unless force is set, nothing
+     * happens if the CSV has not changed since the current version was built. Songs added
+     * or removed through the API since the last load are not kept.
+     */
+    public Map<String, Object> reload(boolean force) {
+        Future<Boolean> result = reloader.submit(() -> reloadNow(force));
+        try {
+            boolean reloaded = result.get();
+            Catalog current = catalog();
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("reloaded", reloaded);
+            status.put("version", current.version);
+            status.put("songs", current.graphBuilder.getSongCount());
+            return status;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reloading", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Reload failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // Runs on the reloader thread only
+    private boolean reloadNow(boolean force) throws IOException {
+        Catalog current = catalog;
+        if (!force && Files.exists(datasetPath) && GraphSnapshot.checksum(datasetPath) == current.checksum) {
+            log.info("Dataset unchanged, keeping version {}", current.version);
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        Catalog next = loadCatalog(current.version + 1);
+        next.ready.join();
+        if (next.graphBuilder.getSongCount() == 0 && current.graphBuilder.getSongCount() > 0) {
+            log.warn("Reloaded dataset is empty, keeping version {}", current.version);
+            return false;
+        }
+        catalog = next;
+        log.info("Published dataset version {} ({} songs) in {} ms", next.version, next.graphBuilder.getSongCount(),
+                System.currentTimeMillis() - start);
+        return true;
+    }
+
+    // Reloads once the dataset file changes and its directory has then been quiet for a while,
+    // so an editor or copy that writes the file in several steps triggers a single reload
+    private void watchDataset(long quietMillis) {
+        Path directory = datasetPath.toAbsolutePath().getParent();
+        Path fileName = datasetPath.getFileName();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            log.info("Watching {} for changes to {}", directory, fileName);
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= fileName.equals(event.context());
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                while ((key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                reloader.submit(() -> {
+                    try {
+                        reloadNow(false);
+                    } catch (Exception e) {
+                        log.error("Error reloading dataset", e);
+                    }
+                });
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (IOException e) {
+            log.error("Error watching dataset directory {}", directory, e);
+        }
+    }
+
+    // Loads the songs, from the snapshot when it matches the CSV (or the CSV is gone), and
+    // returns as soon as they are in. Without a snapshot the graphs are then built in the
+    // background, and the snapshot refreshed once they all are.
+    private Catalog loadCatalog(long version) {
+        long start = System.currentTimeMillis();
+        GraphBuilder graphBuilder = new GraphBuilder();
+        graphBuilder.setBfsMinWeight(bfsMinWeight);
+        graphBuilder.setBfsMaxDepth(bfsMaxDepth);
+        graphBuilder.setPprWalks(pprWalks);
+        graphBuilder.setPprBudgetMillis(pprBudgetMillis);
+        graphBuilder.setAnnM(annM);
+        graphBuilder.setAnnEfConstruction(annEfConstruction);
+        graphBuilder.setAnnEfSearch(annEfSearch);
+        graphBuilder.setTraversalListener(metrics);
+        graphBuilder.setScratchPool(scratchPool);
+        RecommendationCache cache = cacheMode == RecommendationCache.Mode.OFF ? null : new RecommendationCache(cacheMaxEntries);
+        long checksum = -1;
+        try {
+            checksum = Files.exists(datasetPath) ? GraphSnapshot.checksum(datasetPath) : -1;
+        } catch (IOException e) {
+            log.warn("Error reading dataset checksum: {}", e.getMessage());
+        }
+
+        Map<GraphType, CompletableFuture<Void>> graphs = new EnumMap<>(GraphType.class);
+        Map<GraphType, Long> buildMillis = new ConcurrentHashMap<>();
+        CompletableFuture<Void> built;
+        if (snapshotPath != null && GraphSnapshot.read(snapshotPath, checksum, graphBuilder)) {
+            log.info("Loaded {} songs and graphs from snapshot {} in {} ms", graphBuilder.getSongCount(), snapshotPath,
+                    System.currentTimeMillis() - start);
+            for (GraphType graphType : GraphType.values()) {
+                graphs.put(graphType, CompletableFuture.completedFuture(null));
+                buildMillis.put(graphType, 0L);
+            }
+            built = CompletableFuture.completedFuture(null);
+        } else {
+            graphBuilder.loadSongsFromCSV(datasetPath.toString());
+            log.info("Loaded {} songs from {} in {} ms, building graphs", graphBuilder.getSongCount(), datasetPath,
+                    System.currentTimeMillis() - start);
+            for (GraphType graphType : GraphType.values()) {
+                graphs.put(graphType, CompletableFuture.runAsync(
+                        () -> buildGraph(graphBuilder, graphType, buildMillis), graphBuilders));
+            }
+            long sourceChecksum = checksum;
+            built = CompletableFuture.allOf(graphs.values().toArray(new CompletableFuture[0]))
+                    .thenRun(() -> writeSnapshot(graphBuilder, sourceChecksum));
+        }
+        CompletableFuture<Void> ready = cacheMode == RecommendationCache.Mode.EAGER
+                ? built.thenRun(() -> precompute(graphBuilder, cache, cacheTopK))
+                : built;
+        return new Catalog(graphBuilder, cache, version, checksum, graphs, buildMillis, ready);
+    }
+
+    private void buildGraph(GraphBuilder graphBuilder, GraphType graphType, Map<GraphType, Long> buildMillis) {
+        long start = System.currentTimeMillis();
+        switch (graphType) {
+            case SONG_BASED -> graphBuilder.buildSongBasedGraph();
+            case ARTIST_BASED -> graphBuilder.buildArtistBasedGraph();
+            case MOOD_BASED -> graphBuilder.buildMoodBasedGraph();
+        }
+        long millis = System.currentTimeMillis() - start;
+        buildMillis.put(graphType, millis);
+        metrics.recordBuild(graphType, millis);
+        log.info("Built {} graph in {} ms", graphType, millis);
+    }
+
+    private void writeSnapshot(GraphBuilder graphBuilder, long checksum) {
+        if (snapshotPath == null || checksum < 0) {
+            return;
+        }
+        try {
+            GraphSnapshot.write(snapshotPath, checksum, graphBuilder);
+            log.info("Wrote snapshot {}", snapshotPath);
+        } catch (IOException e) {
+            log.warn("Error writing snapshot {}: {}", snapshotPath, e.getMessage());
+        }
     }
 
+    // Waits up to graphWaitMillis for each graph to finish building
+    private void awaitGraphs(Catalog catalog, GraphType... graphTypes) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(graphWaitMillis);
+        for (GraphType graphType : graphTypes) {
+            try {
+                catalog.graphs.get(graphType).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new GraphNotReadyException(graphType,
+                        catalog.graphBuilder.getBuildProgress(modelType(graphType)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GraphNotReadyException(graphType,
+                        catalog.graphBuilder.getBuildProgress(modelType(graphType)));
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Building the " + graphType + " graph failed: "
+                        + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private static model.GraphBuilder.GraphType modelType(GraphType graphType) {
+        return model.GraphBuilder.GraphType.valueOf(graphType.name());
+    }
+
+    // Materializes the top-K table for every song (and every mood) on every graph, for the
+    // configured algorithms only; the rest are cached as they are asked for
+    private void precompute(GraphBuilder graphBuilder, RecommendationCache cache, int topK) {
+        long start = System.currentTimeMillis();
+        SongTable songs = graphBuilder.getSongTable();
+        for (AlgoType algoType : precomputeAlgorithms) {
+            for (int i = 0; i < songs.size(); i++) {
+                String songId = songs.getSongId(i);
+                for (GraphType graphType : new GraphType[] {GraphType.SONG_BASED, GraphType.ARTIST_BASED}) {
+                    cache.put(songId, graphType, algoType, topK,
+                            computeRecommendations(graphBuilder, songId, graphType, algoType, topK));
+                }
+            }
+            SongTable.Dictionary moods = moodSeedPolicy == MoodSeedPolicy.WEIGHTED_RANDOM ? new SongTable.Dictionary()
+                    : songs.getMoodNames();
+            for (int code = 0; code < moods.size(); code++) {
+                String mood = moods.decode(code);
+                String key = cacheKey(mood, GraphType.MOOD_BASED);
+                cache.put(key, GraphType.MOOD_BASED, algoType, topK,
+                        computeRecommendations(graphBuilder, mood, GraphType.MOOD_BASED, algoType, topK));
+            }
+        }
+        log.info("Precomputed {} recommendation lists in {} ms", cache.size(), System.currentTimeMillis() - start);
+        if (cache.getEvictions() > 0) {
+            log.warn("Cache holds at most {} entries, {} precomputed lists were evicted", cache.getMaxEntries(),
+                    cache.getEvictions());
+        }
+    }
+
+    /** The most popular song with this mood, ignoring case. */
     public Optional<String> findSongIdByMood(String mood) {
-        System.out.println("\n=== Mood-based Song Search ===");
-        System.out.println("Input mood: '" + mood + "'");
-        System.out.println("Current working directory: " + System.getProperty("user.dir"));
-        
-        List<Song> songsWithMood = graphBuilder.getSongsByMood(mood);
-        System.out.println("Found " + songsWithMood.size() + " songs with mood: " + mood);
-        
-        if (songsWithMood.isEmpty()) {
-            System.out.println("WARNING: No songs found with mood: " + mood);
-            return Optional.empty();
+        GraphBuilder.State state = catalog().graphBuilder.getState();
+        int index = state.getMoodIndex().mostPopular(mood);
+        return index < 0 ? Optional.empty() : Optional.of(state.getSongTable().getSongId(index));
+    }
+
+    // The seeds of a MOOD_BASED request in the state, chosen by the configured policy
+    private int[] moodSeeds(GraphBuilder.State state, String mood) {
+        MoodIndex moodIndex = state.getMoodIndex();
+        switch (moodSeedPolicy) {
+            case TOP_N:
+                return moodIndex.top(mood, moodSeedCount);
+            case WEIGHTED_RANDOM:
+                int seed = moodIndex.weightedRandom(mood, ThreadLocalRandom.current());
+                return seed < 0 ? new int[0] : new int[] {seed};
+            default:
+                int mostPopular = moodIndex.mostPopular(mood);
+                return mostPopular < 0 ? new int[0] : new int[] {mostPopular};
         }
-        
-        // Get the first song with the highest popularity
-        Song selectedSong = songsWithMood.stream()
-                .max((s1, s2) -> Double.compare(s1.getPopularity(), s2.getPopularity()))
-                .get();
-        
-        System.out.println("Selected seed song: " + selectedSong.getTitle() + " by " + selectedSong.getArtist() + 
-                         " (ID: " + selectedSong.getSongId() + ", Mood: " + selectedSong.getMood() + ", Popularity: " + selectedSong.getPopularity() + ")");
-        System.out.println("=== End of Mood Search ===\n");
-        
-        return Optional.of(selectedSong.getSongId());
     }
 
-    public List<RecommendationDto> recommend(String seedSongId, GraphType graphType, AlgoType algoType) {
-        System.out.println("\nReceived recommendation request:");
-        System.out.println("- Seed Song ID: " + seedSongId);
-        System.out.println("- Graph Type: " + graphType);
-        System.out.println("- Algorithm: " + algoType);
-        
-        // For mood-based recommendations, try to find a song with the given mood
-        if (graphType == GraphType.MOOD_BASED) {
-            String originalSeedSongId = seedSongId;
-            seedSongId = findSongIdByMood(seedSongId)
-                    .orElseThrow(() -> new IllegalArgumentException("No songs found with mood: " + originalSeedSongId));
-            System.out.println("Using seed song ID for mood " + originalSeedSongId + ": " + seedSongId);
+    public List<RecommendationDto> recommend(String seedSongId, GraphType graphType, AlgoType algoType, int limit) {
+        Catalog catalog = catalog();
+        // ANN searches its own index, so it answers while the graph is still building
+        if (algoType != AlgoType.ANN) {
+            awaitGraphs(catalog, graphType);
+        }
+        long start = System.nanoTime();
+        try {
+            return recommend(catalog, seedSongId, graphType, algoType, limit);
+        } finally {
+            metrics.recordRecommendation(graphType, algoType, System.nanoTime() - start);
+        }
+    }
+
+    // From the cache or a traversal of the catalog, whose graph is known to be built unless ANN is asked for
+    private List<RecommendationDto> recommend(Catalog catalog, String seedSongId, GraphType graphType,
+                                              AlgoType algoType, int limit) {
+        GraphBuilder graphBuilder = catalog.graphBuilder;
+        RecommendationCache cache = catalog.cache;
+        // A random seed gives a different list each time, so there is nothing to reuse
+        if (cache == null || isRandomSeed(graphType)) {
+            return computeRecommendations(graphBuilder, seedSongId, graphType, algoType, limit);
+        }
+        String key = cacheKey(seedSongId, graphType);
+        long generation = cache.getGeneration();
+        List<RecommendationDto> cached = cache.get(key, graphType, algoType, limit);
+        if (cached != null) {
+            return cached;
+        }
+        List<RecommendationDto> recommendations = computeRecommendations(graphBuilder, seedSongId, graphType, algoType, limit);
+        cache.put(key, graphType, algoType, limit, recommendations, generation);
+        return recommendations;
+    }
+
+    private boolean isRandomSeed(GraphType graphType) {
+        return graphType == GraphType.MOOD_BASED && moodSeedPolicy == MoodSeedPolicy.WEIGHTED_RANDOM;
+    }
+
+    /**
+     * Answers many GET /recommend requests at once, in entry order, all from the same
+     * catalog. Identical entries are answered once. The rest are spread over the batch
+     * workers and the calling thread, which take entries from a shared counter until
+     * none are left. An entry whose mood has no songs gets an error instead of a list;
+     * an unknown song id gets an empty list, as it does on its own.
+     */
+    public List<BatchRecommendationResult> recommendBatch(List<BatchRecommendationRequest.Entry> entries, int limit) {
+        if (entries.size() > batchMaxEntries) {
+            throw new IllegalArgumentException("A batch may have at most " + batchMaxEntries + " entries, got "
+                    + entries.size());
+        }
+        Set<GraphType> graphTypes = EnumSet.noneOf(GraphType.class);
+        for (int i = 0; i < entries.size(); i++) {
+            BatchRecommendationRequest.Entry entry = entries.get(i);
+            if (entry == null || entry.getSongId() == null || entry.getSongId().isBlank()
+                    || entry.getGraphType() == null || entry.getAlgorithm() == null) {
+                throw new IllegalArgumentException("Entry " + i + ": songId, graphType and algorithm are required");
+            }
+            int entryLimit = entry.getLimit() == null ? limit : entry.getLimit();
+            if (entryLimit < 1) {
+                throw new IllegalArgumentException("Entry " + i + ": limit must be at least 1, got " + entryLimit);
+            }
+            if (entry.getAlgorithm() != AlgoType.ANN) {
+                graphTypes.add(entry.getGraphType());
+            }
+        }
+        Catalog catalog = catalog();
+        awaitGraphs(catalog, graphTypes.toArray(new GraphType[0]));
+        long start = System.nanoTime();
+
+        // Random mood seeds are drawn per entry, so those are never merged
+        Map<BatchKey, Integer> distinct = new LinkedHashMap<>();
+        int[] answerOf = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            BatchRecommendationRequest.Entry entry = entries.get(i);
+            BatchKey key = new BatchKey(cacheKey(entry.getSongId(), entry.getGraphType()), entry.getSongId(),
+                    entry.getGraphType(), entry.getAlgorithm(), entry.getLimit() == null ? limit : entry.getLimit(),
+                    isRandomSeed(entry.getGraphType()) ? i : -1);
+            answerOf[i] = distinct.computeIfAbsent(key, k -> distinct.size());
+        }
+        List<BatchKey> keys = new ArrayList<>(distinct.keySet());
+        BatchRecommendationResult[] answers = new BatchRecommendationResult[keys.size()];
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int k = next.getAndIncrement(); k < answers.length; k = next.getAndIncrement()) {
+                answers[k] = answer(catalog, keys.get(k));
+            }
+        };
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int k = 1; k < Math.min(batchWorkers.getMaximumPoolSize() + 1, answers.length); k++) {
+            helpers.add(batchWorkers.submit(worker));
+        }
+        worker.run();
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for batch workers", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        List<BatchRecommendationResult> results = new ArrayList<>(entries.size());
+        for (int answer : answerOf) {
+            results.add(answers[answer]);
+        }
+        metrics.recordBatch(entries.size(), System.nanoTime() - start);
+        log.debug("Answered a batch of {} entries ({} distinct) in {} us", entries.size(), answers.length,
+                (System.nanoTime() - start) / 1000);
+        return results;
+    }
+
+    private BatchRecommendationResult answer(Catalog catalog, BatchKey key) {
+        long start = System.nanoTime();
+        try {
+            return new BatchRecommendationResult(key.seed(), key.graphType(), key.algoType(),
+                    recommend(catalog, key.seed(), key.graphType(), key.algoType(), key.limit()), null);
+        } catch (IllegalArgumentException e) {
+            return new BatchRecommendationResult(key.seed(), key.graphType(), key.algoType(), null, e.getMessage());
+        } finally {
+            metrics.recordRecommendation(key.graphType(), key.algoType(), System.nanoTime() - start);
+        }
+    }
+
+    // Entries with the same key get the same answer; seed is the id or mood as first given
+    private record BatchKey(String key, String seed, GraphType graphType, AlgoType algoType, int limit, int entry) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof BatchKey that && key.equals(that.key) && graphType == that.graphType
+                    && algoType == that.algoType && limit == that.limit && entry == that.entry;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, graphType, algoType, limit, entry);
+        }
+    }
+
+    // Moods are matched case-insensitively, so "Happy" and "happy" share an entry
+    private static String cacheKey(String seed, GraphType graphType) {
+        return graphType == GraphType.MOOD_BASED ? seed.toLowerCase() : seed;
+    }
+
+    public Map<String, Object> getCacheStats() {
+        RecommendationCache cache = catalog().cache;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", cacheMode);
+        if (cache != null) {
+            stats.put("size", cache.size());
+            stats.put("maxEntries", cache.getMaxEntries());
+            stats.put("hits", cache.getHits());
+            stats.put("misses", cache.getMisses());
+            stats.put("evictions", cache.getEvictions());
         }
+        return stats;
+    }
+
+    private List<RecommendationDto> computeRecommendations(GraphBuilder graphBuilder, String seedSongId,
+                                                           GraphType graphType, AlgoType algoType, int limit) {
+        log.debug("Recommendation request: seed {}, graph {}, algorithm {}", seedSongId, graphType, algoType);
 
-        // Get the seed song's title and artist
-        Song seedSong = graphBuilder.getSongById(seedSongId);
-        String seedTitle = seedSong != null ? seedSong.getTitle() : null;
-        String seedArtist = seedSong != null ? seedSong.getArtist() : null;
+        // Seeds, traversal and song rows all come from one state, so inserts and removals
+        // published meanwhile neither wait for this request nor show up halfway through it
+        GraphBuilder.State state = graphBuilder.getState();
+        SongTable songs = state.getSongTable();
+
+        // For mood-based recommendations, the mood index picks the seed songs
+        int[] seeds;
+        if (graphType == GraphType.MOOD_BASED) {
+            seeds = moodSeeds(state, seedSongId);
+            if (seeds.length == 0) {
+                throw new IllegalArgumentException("No songs found with mood: " + seedSongId);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Using {} seeds for mood {}: {}", moodSeedPolicy, seedSongId,
+                        Arrays.stream(seeds).mapToObj(songs::getSongId).collect(Collectors.joining(", ")));
+            }
+        } else {
+            int seedIndex = songs.indexOf(seedSongId);
+            seeds = seedIndex < 0 ? new int[0] : new int[] {seedIndex};
+        }
 
         // Call the real recommend method from GraphBuilder
-        List<String> recs = graphBuilder.recommend(
-                seedSongId,
-                model.GraphBuilder.GraphType.valueOf(graphType.name()),
-                model.GraphBuilder.AlgoType.valueOf(algoType.name())
+        List<Recommendation> recs = graphBuilder.recommend(
+                state,
+                seeds,
+                modelType(graphType),
+                model.GraphBuilder.AlgoType.valueOf(algoType.name()),
+                limit,
+                acceptFilter(songs, seeds),
+                false
         );
+        return toDtos(songs, recs);
+    }
 
-        System.out.println("Found " + recs.size() + " recommendations");
-        
-        // Map to RecommendationDto (parse songId and score from recs)
-        List<RecommendationDto> recommendations = recs.stream().map(rec -> {
-            String[] parts = rec.split(" ");
-            String songId = parts[0];
-            double score = 0.0;
-            if (rec.contains("weight:")) {
-                try {
-                    score = Double.parseDouble(rec.replaceAll(".*weight: ", "").replace(")", ""));
-                } catch (Exception e) { score = 0.0; }
-            }
-            Song song = graphBuilder.getSongById(songId);
-            if (song == null) {
-                System.out.println("Warning: Could not find song with ID: " + songId);
-                return null;
-            }
-            return new RecommendationDto(
-                songId,
-                song.getTitle(),
-                song.getArtist(),
-                score
-            );
-        })
-        .filter(dto -> dto != null)
-        // Filter out exact duplicates and very similar songs
-        .filter(dto -> {
-            if (seedTitle == null || seedArtist == null) return true;
-            
-            // Normalize strings for comparison
-            String recTitle = dto.getTitle().replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            String recArtist = dto.getArtist().replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            String seedNormTitle = seedTitle.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            String seedNormArtist = seedArtist.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            
-            // Skip if it's the exact same song
-            if (recTitle.equals(seedNormTitle) && recArtist.equals(seedNormArtist)) {
-                return false;
+    /**
+     * Playlist continuation: recommends from every song in the playlist at once, in one
+     * traversal, with each candidate scored by combining its affinity to the seeds. The
+     * playlist songs themselves, and remixes and covers of them, are never recommended.
+     * Unknown song ids are skipped, and a song listed twice counts at its last position.
+     */
+    public List<RecommendationDto> recommendPlaylist(List<String> songIds, GraphType graphType, AlgoType algoType,
+                                                     SeedAggregation aggregation, int limit) {
+        if (songIds == null || songIds.isEmpty()) {
+            throw new IllegalArgumentException("A playlist needs at least one song id");
+        }
+        if (songIds.size() > GraphBuilder.MAX_PLAYLIST_SEEDS) {
+            throw new IllegalArgumentException("A playlist may have at most " + GraphBuilder.MAX_PLAYLIST_SEEDS
+                    + " songs, got " + songIds.size());
+        }
+        Catalog catalog = catalog();
+        awaitGraphs(catalog, graphType);
+        long start = System.nanoTime();
+        GraphBuilder graphBuilder = catalog.graphBuilder;
+        GraphBuilder.State state = graphBuilder.getState();
+        try {
+            SongTable songs = state.getSongTable();
+            Set<Integer> ordered = new LinkedHashSet<>();
+            for (String songId : songIds) {
+                int index = songs.indexOf(songId);
+                if (index >= 0) {
+                    ordered.remove(index);
+                    ordered.add(index);
+                }
             }
+            int[] seeds = ordered.stream().mapToInt(Integer::intValue).toArray();
+            log.debug("Playlist request: {} of {} songs known, graph {}, algorithm {}, {}", seeds.length,
+                    songIds.size(), graphType, algoType, aggregation);
+            List<Recommendation> recs = graphBuilder.recommendPlaylist(
+                    state,
+                    seeds,
+                    modelType(graphType),
+                    model.GraphBuilder.AlgoType.valueOf(algoType.name()),
+                    model.GraphBuilder.SeedAggregation.valueOf(aggregation.name()),
+                    playlistDecay,
+                    limit,
+                    acceptFilter(songs, seeds));
+            return toDtos(songs, recs);
+        } finally {
+            metrics.recordPlaylist(songIds.size(), System.nanoTime() - start);
+        }
+    }
+
+    // Filters out the seeds themselves, remixes/covers of them, and repeats of a song already
+    // recommended, as the traversal produces them, so the limit counts distinct songs
+    private IntPredicate acceptFilter(SongTable songs, int[] seeds) {
+        // Get the seed songs' titles and artists
+        String[] seedNormTitles = new String[seeds.length];
+        String[] seedNormArtists = new String[seeds.length];
+        for (int k = 0; k < seeds.length; k++) {
+            seedNormTitles[k] = normalize(songs.getTitle(seeds[k]));
+            seedNormArtists[k] = normalize(songs.getArtist(seeds[k]));
+        }
+
+        Set<String> seen = new HashSet<>();
+        return index -> {
+            String recTitle = normalize(songs.getTitle(index));
+            String recArtist = normalize(songs.getArtist(index));
+            for (int k = 0; k < seeds.length; k++) {
+                String seedNormTitle = seedNormTitles[k];
+                String seedNormArtist = seedNormArtists[k];
+
+                // Skip if it's the exact same song
+                if (recTitle.equals(seedNormTitle) && recArtist.equals(seedNormArtist)) {
+                    return false;
+                }
             
-            // Skip if it's a remix/cover of the same song
-            if ((recTitle.contains(seedNormTitle) || seedNormTitle.contains(recTitle)) &&
-                (recArtist.contains(seedNormArtist) || seedNormArtist.contains(recArtist))) {
-                return false;
+                // Skip if it's a remix/cover of the same song
+                if ((recTitle.contains(seedNormTitle) || seedNormTitle.contains(recTitle)) &&
+                    (recArtist.contains(seedNormArtist) || seedNormArtist.contains(recArtist))) {
+                    return false;
+                }
             }
-            
-            return true;
-        })
-        // Remove duplicates within recommendations
-        .collect(Collectors.collectingAndThen(
-            Collectors.toMap(
-                dto -> dto.getTitle().toLowerCase() + "|" + dto.getArtist().toLowerCase(),
-                dto -> dto,
-                (existing, replacement) -> existing.getScore() > replacement.getScore() ? existing : replacement
-            ),
-            map -> new ArrayList<>(map.values())
-        ));
-        
-        System.out.println("Returning " + recommendations.size() + " recommendations (excluding duplicates)");
-        recommendations.forEach(rec -> 
-            System.out.println("- " + rec.getTitle() + " by " + rec.getArtist() + " (Score: " + rec.getScore() + ")")
-        );
         
+            // Remove duplicates within recommendations
+            return seen.add(songs.getTitle(index).toLowerCase() + "|" + songs.getArtist(index).toLowerCase());
+        };
+    }
+
+    // Maps to RecommendationDto straight from the song table of the state the recommendations came from
+    private List<RecommendationDto> toDtos(SongTable songs, List<Recommendation> recs) {
+        List<RecommendationDto> recommendations = new ArrayList<>(recs.size());
+        for (Recommendation rec : recs) {
+            int index = rec.getSongIndex();
+            recommendations.add(new RecommendationDto(
+                songs.getSongId(index),
+                songs.getTitle(index),
+                songs.getArtist(index),
+                rec.getScore()
+            ));
+        }
+    
+        if (log.isDebugEnabled()) {
+            log.debug("Returning {} recommendations (excluding duplicates)", recommendations.size());
+            recommendations.forEach(rec ->
+                log.debug("- {} by {} (Score: {})", rec.getTitle(), rec.getArtist(), rec.getScore())
+            );
+        }
+
         return recommendations;
     }
 
-    public List<RecommendationDto> searchSongs(String query) {
-        System.out.println("\n=== Song Search Request ===");
-        System.out.println("Query: " + query);
-        
-        List<Song> matchingSongs = graphBuilder.searchSongs(query);
-        
-        // Group songs by title and artist to remove duplicates
-        List<RecommendationDto> results = matchingSongs.stream()
-            .collect(Collectors.groupingBy(
-                song -> song.getTitle() + "|" + song.getArtist(),
-                Collectors.maxBy((s1, s2) -> Double.compare(s1.getPopularity(), s2.getPopularity()))
-            ))
-            .values()
+    /**
+     * Recall@k of ANN against the graph of the given type, over up to samples random
+     * songs, with searches keeping ef candidates (0 for the configured efSearch), and the
+     * mean search latency and distance computations that bought it.
+     */
+    public Map<String, Object> annRecall(GraphType graphType, int k, int samples, int ef) {
+        if (k < 1 || samples < 1) {
+            throw new IllegalArgumentException("k and samples must be at least 1");
+        }
+        Catalog catalog = catalog();
+        awaitGraphs(catalog, graphType);
+        GraphBuilder.AnnRecall recall = catalog.graphBuilder.annRecall(modelType(graphType), k, samples,
+                ef > 0 ? ef : annEfSearch, 1);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("graphType", graphType);
+        report.put("k", recall.k());
+        report.put("ef", recall.ef());
+        report.put("queries", recall.queries());
+        report.put("recall", recall.recall());
+        report.put("meanMicros", recall.meanMicros());
+        report.put("meanDistances", recall.meanDistances());
+        return report;
+    }
+
+    /** Adds a song to the catalog and graphs; cached recommendations are dropped. */
+    public SongDto addSong(SongDto song) {
+        for (String field : new String[] {song.getSongId(), song.getTitle(), song.getArtist(), song.getGenre(), song.getMood()}) {
+            if (field == null || field.isBlank()) {
+                throw new IllegalArgumentException("songId, title, artist, genre and mood are required");
+            }
+        }
+        Catalog catalog = catalog();
+        awaitGraphs(catalog, GraphType.values());
+        long start = System.currentTimeMillis();
+        catalog.graphBuilder.insertSong(new Song(song.getSongId().trim(), song.getTitle().trim(), song.getArtist().trim(),
+                song.getLanguage() == null ? "" : song.getLanguage().trim(), song.getGenre().trim(),
+                song.getReleaseYear(), song.getMood().trim(), song.getTempo(), song.getPopularity()));
+        if (catalog.cache != null) {
+            catalog.cache.clear();
+        }
+        log.info("Added song {} in {} ms", song.getSongId(), System.currentTimeMillis() - start);
+        return song;
+    }
+
+    /** Removes a song from the catalog and graphs. Returns false if the id is unknown. */
+    public boolean removeSong(String songId) {
+        Catalog catalog = catalog();
+        awaitGraphs(catalog, GraphType.values());
+        boolean removed = catalog.graphBuilder.removeSong(songId);
+        if (removed && catalog.cache != null) {
+            catalog.cache.clear();
+        }
+        return removed;
+    }
+
+    private static String normalize(String value) {
+        return value.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
+    }
+
+    /**
+     * Songs matching the query by title or artist, most popular first, with at most one
+     * song per title and artist. A limit of 0 or less returns every match.
+     */
+    public List<RecommendationDto> searchSongs(String query, boolean prefix, int limit) {
+        long start = System.nanoTime();
+        // Matches arrive most popular first, so the first of each title and artist is kept
+        GraphBuilder graphBuilder = catalog().graphBuilder;
+        GraphBuilder.State state = graphBuilder.getState();
+        SongTable songs = state.getSongTable();
+        Set<TitleAndArtist> seen = new HashSet<>();
+        List<RecommendationDto> results = graphBuilder
+            .searchSongs(state, query, prefix, limit,
+                index -> seen.add(new TitleAndArtist(songs.getTitle(index), songs.getArtistCodes()[index])))
             .stream()
-            .filter(Optional::isPresent)
-            .map(Optional::get)
             .map(song -> new RecommendationDto(
                 song.getSongId(),
                 song.getTitle(),
@@ -162,13 +865,17 @@ public class RecommendationService {
                 song.getPopularity()
             ))
             .collect(Collectors.toList());
-        
-        System.out.println("Returning " + results.size() + " unique search results");
+
+        metrics.recordSearch(prefix, System.nanoTime() - start);
+        log.debug("Returning {} unique search results for '{}'", results.size(), query);
         return results;
     }
 
+    private record TitleAndArtist(String title, int artist) {
+    }
+
     public Optional<String> findSongIdByTitleAndArtist(String title, String artist) {
-        return graphBuilder.findExactSong(title, artist)
+        return catalog().graphBuilder.findExactSong(title, artist)
                 .map(Song::getSongId);
     }
 } 
\ No newline at end of file
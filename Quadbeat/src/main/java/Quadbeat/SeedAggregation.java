@@ -0,0 +1,11 @@
+package Quadbeat;
+
+/** How a playlist request combines what each of its seed songs thinks of a candidate. */
+public enum SeedAggregation {
+    // Affinities added up, so songs close to many seeds rank first
+    SUM,
+    // The closest seed's affinity alone
+    MAX,
+    // Added up with later seeds weighted more, by quadbeat.playlist.decay per step back
+    DECAYED
+}
@@ -0,0 +1,33 @@
+package  Quadbeat;
+
+public class SongDto {
+    private String songId;
+    private String title;
+    private String artist;
+    private String language;
+    private String genre;
+    private int releaseYear;
+    private String mood;
+    private double tempo;
+    private double popularity;
+
+    public SongDto() {}
+    public String getSongId() { return songId; }
+    public void setSongId(String songId) { this.songId = songId; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public String getArtist() { return artist; }
+    public void setArtist(String artist) { this.artist = artist; }
+    public String getLanguage() { return language; }
+    public void setLanguage(String language) { this.language = language; }
+    public String getGenre() { return genre; }
+    public void setGenre(String genre) { this.genre = genre; }
+    public int getReleaseYear() { return releaseYear; }
+    public void setReleaseYear(int releaseYear) { this.releaseYear = releaseYear; }
+    public String getMood() { return mood; }
+    public void setMood(String mood) { this.mood = mood; }
+    public double getTempo() { return tempo; }
+    public void setTempo(double tempo) { this.tempo = tempo; }
+    public double getPopularity() { return popularity; }
+    public void setPopularity(double popularity) { this.popularity = popularity; }
+}
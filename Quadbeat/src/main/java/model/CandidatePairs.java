@@ -0,0 +1,142 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Produces the song pairs that are worth scoring when building a graph, instead of
+ * every (i, j) combination. Each rule describes one way two songs can become
+ * similar enough: sharing a key (bucket), or sharing a key and lying within a
+ * numeric radius of each other (window). A pair is a candidate if any rule matches.
+ *
+ * Pairs are emitted with i < j, ordered by i and then by j, which is the same order
+ * the nested all-pairs loops visit them in, so adjacency lists come out identical.
+ */
+public class CandidatePairs {
+
+    public interface PairConsumer {
+        void accept(int i, int j);
+    }
+
+    private final int size;
+    private final List<Rule> rules = new ArrayList<>();
+
+    public CandidatePairs(int size) {
+        this.size = size;
+    }
+
+    /** Pairs whose keys are equal. */
+    public void addBucket(int[] keys) {
+        rules.add(new Rule(keys, null, 0));
+    }
+
+    /** Pairs whose keys are equal (or any pair if keys is null) and |value_i - value_j| <= radius. */
+    public void addWindow(int[] keys, double[] values, double radius) {
+        rules.add(new Rule(keys, values, radius));
+    }
+
+    public void forEachPair(PairConsumer consumer) {
+        forEachPair(0, size, consumer);
+    }
+
+    /** Visits candidate pairs whose first index lies in [from, to). */
+    public void forEachPair(int from, int to, PairConsumer consumer) {
+        Buffer buffer = new Buffer();
+        for (int i = from; i < to; i++) {
+            buffer.count = 0;
+            for (Rule rule : rules) {
+                rule.collect(i, buffer);
+            }
+            if (buffer.count == 0) {
+                continue;
+            }
+            Arrays.sort(buffer.items, 0, buffer.count);
+            int previous = -1;
+            for (int k = 0; k < buffer.count; k++) {
+                int j = buffer.items[k];
+                if (j != previous) {
+                    consumer.accept(i, j);
+                    previous = j;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static class Buffer {
+        int[] items = new int[16];
+        int count;
+
+        void add(int value) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+            }
+            items[count++] = value;
+        }
+    }
+
+    // Indices sorted by (key, value, index), plus each index's position in that order
+    private class Rule {
+        final int[] keys;
+        final double[] values;
+        final double radius;
+        final int[] order;
+        final int[] position;
+
+        Rule(int[] keys, double[] values, double radius) {
+            this.keys = keys;
+            this.values = values;
+            this.radius = radius;
+            this.order = IntStream.range(0, size)
+                    .boxed()
+                    .sorted((a, b) -> {
+                        int c = Integer.compare(keyOf(a), keyOf(b));
+                        if (c == 0 && values != null) {
+                            c = Double.compare(values[a], values[b]);
+                        }
+                        return c != 0 ? c : Integer.compare(a, b);
+                    })
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            this.position = new int[size];
+            for (int p = 0; p < size; p++) {
+                position[order[p]] = p;
+            }
+        }
+
+        int keyOf(int index) {
+            return keys == null ? 0 : keys[index];
+        }
+
+        // Adds every j > i matched by this rule
+        void collect(int i, Buffer buffer) {
+            int key = keyOf(i);
+            int p = position[i];
+            if (values == null) {
+                // Bucket members are ordered by index, so everything after i has j > i
+                for (int q = p + 1; q < size && keyOf(order[q]) == key; q++) {
+                    buffer.add(order[q]);
+                }
+                return;
+            }
+            double value = values[i];
+            for (int q = p - 1; q >= 0 && keyOf(order[q]) == key
+                    && Math.abs(value - values[order[q]]) <= radius; q--) {
+                if (order[q] > i) {
+                    buffer.add(order[q]);
+                }
+            }
+            for (int q = p + 1; q < size && keyOf(order[q]) == key
+                    && Math.abs(value - values[order[q]]) <= radius; q++) {
+                if (order[q] > i) {
+                    buffer.add(order[q]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package model;
+
+/**
+ * Compressed-sparse-row graph: the neighbors of node i are targets[offsets[i]] up to
+ * targets[offsets[i + 1]], with their edge weights at the same positions in weights.
+ */
+public class CsrGraph implements Graph {
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    public CsrGraph(int[] offsets, int[] targets, double[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Builds a graph from undirected edge buffers. Each node's neighbors keep the
+     * order in which its edges appear across the buffers.
+     */
+    public static CsrGraph fromEdges(int nodeCount, EdgeBuffer... buffers) {
+        int[] offsets = new int[nodeCount + 1];
+        for (EdgeBuffer edges : buffers) {
+            for (int k = 0; k < edges.size(); k++) {
+                offsets[edges.from(k) + 1]++;
+                offsets[edges.to(k) + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] targets = new int[offsets[nodeCount]];
+        double[] weights = new double[offsets[nodeCount]];
+        int[] cursor = new int[nodeCount];
+        System.arraycopy(offsets, 0, cursor, 0, nodeCount);
+        for (EdgeBuffer edges : buffers) {
+            for (int k = 0; k < edges.size(); k++) {
+                int from = edges.from(k);
+                int to = edges.to(k);
+                double weight = edges.weight(k);
+                targets[cursor[from]] = to;
+                weights[cursor[from]++] = weight;
+                targets[cursor[to]] = from;
+                weights[cursor[to]++] = weight;
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+
+    /** Copies any graph into CSR form, keeping each node's neighbor order. */
+    public static CsrGraph copyOf(Graph graph) {
+        int nodeCount = graph.nodeCount();
+        int[] offsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] = offsets[node] + graph.degree(node);
+        }
+        int[] targets = new int[offsets[nodeCount]];
+        double[] weights = new double[offsets[nodeCount]];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int k = 0, slot = offsets[node]; slot < offsets[node + 1]; k++, slot++) {
+                targets[slot] = graph.target(node, k);
+                weights[slot] = graph.weight(node, k);
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+
+    @Override
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public long edgeCount() {
+        return targets.length / 2;
+    }
+
+    @Override
+    public int degree(int node) {
+        return offsets[node + 1] - offsets[node];
+    }
+
+    @Override
+    public int target(int node, int k) {
+        return targets[offsets[node] + k];
+    }
+
+    @Override
+    public double weight(int node, int k) {
+        return weights[offsets[node] + k];
+    }
+
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    public int[] getTargets() {
+        return targets;
+    }
+
+    public double[] getWeights() {
+        return weights;
+    }
+}
@@ -0,0 +1,601 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads a song CSV into a SongTable straight from a memory-mapped file. The body is split
+ * into newline-aligned chunks that are parsed in parallel on the common fork-join pool,
+ * one pass over the bytes per chunk, and appended to the table in file order.
+ *
+ * Columns are found by header name, so besides songs_dataset.csv the loader reads
+ * catalogs that only have some of the columns, such as hindi_songs.csv:
+ * - a leading unnamed column (rows with one more field than the header) is the song id
+ *   when there is no song_id column; without either, the row's line number in the body
+ *   is used
+ * - a missing mood is derived from the genre, the way create_dataset.py does
+ * - a "User-Rating" such as 8.8/10 becomes a popularity of 0.88
+ * - missing tempos are NaN, and other missing fields are empty or zero
+ *
+ * Fields may be quoted, with "" for a quote inside them, but a record may not span lines.
+ * Rows that cannot be parsed are skipped and reported with their line number.
+ */
+public class CsvSongLoader {
+    private static final long MIN_CHUNK_BYTES = 1 << 22;
+    private static final long MAX_CHUNK_BYTES = 1 << 28;
+
+    public static class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + message;
+        }
+    }
+
+    public static class Result {
+        private final int loaded;
+        private final List<RowError> errors;
+
+        Result(int loaded, List<RowError> errors) {
+            this.loaded = loaded;
+            this.errors = errors;
+        }
+
+        public int getLoaded() { return loaded; }
+        public List<RowError> getErrors() { return errors; }
+    }
+
+    private final Charset charset;
+
+    public CsvSongLoader() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public CsvSongLoader(Charset charset) {
+        this.charset = charset;
+    }
+
+    /** Appends every parseable row of the file to songs. */
+    public Result load(Path file, SongTable songs) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long bodyStart = nextLineStart(channel, 0, size);
+            Layout layout = new Layout(parseHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, bodyStart)));
+
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            long chunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, (size - bodyStart) / (parallelism * 4L)));
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(bodyStart);
+            for (long start = bodyStart; start < size; ) {
+                start = nextLineStart(channel, Math.min(size, start + chunkBytes) - 1, size);
+                bounds.add(start);
+            }
+
+            List<ChunkTask> tasks = new ArrayList<>();
+            for (int k = 0; k + 1 < bounds.size(); k++) {
+                tasks.add(new ChunkTask(channel, bounds.get(k), bounds.get(k + 1), layout));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            for (ChunkTask task : tasks) {
+                if (task.failure != null) {
+                    throw task.failure;
+                }
+            }
+
+            // Merge in file order; line numbers are 1-based and the header is line 1
+            int before = songs.size();
+            List<RowError> errors = new ArrayList<>();
+            long line = 1;
+            for (ChunkTask task : tasks) {
+                Chunk chunk = task.chunk;
+                for (int r = 0; r < chunk.count; r++) {
+                    // Rows without an id are numbered by body line, counted across chunks
+                    String songId = chunk.songIds[r] != null ? chunk.songIds[r]
+                            : String.valueOf(line - 1 + chunk.rowLines[r]);
+                    songs.add(songId, chunk.titles[r], chunk.artists[r], chunk.languages[r],
+                            chunk.genres[r], chunk.releaseYears[r], chunk.moods[r], chunk.tempos[r],
+                            chunk.popularities[r]);
+                }
+                for (RowError error : chunk.errors) {
+                    errors.add(new RowError(line + error.line, error.message));
+                }
+                line += chunk.lines;
+            }
+            return new Result(songs.size() - before, errors);
+        }
+    }
+
+    /** The mood create_dataset.py assigns to a genre. */
+    public static String moodForGenre(String genre) {
+        String lower = genre.toLowerCase();
+        if (lower.contains("sad") || lower.contains("melancholy")) {
+            return "Melancholy";
+        }
+        if (lower.contains("dance") || lower.contains("energetic") || lower.contains("pop")) {
+            return "Energetic";
+        }
+        return "Neutral";
+    }
+
+    // Position just past the first newline at or after position, or size if there is none
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int k = 0; k < read; k++) {
+                if (window.get(k) == '\n') {
+                    return position + k + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private String[] parseHeader(MappedByteBuffer buffer) {
+        int start = 0;
+        // Skip a UTF-8 byte order mark
+        if (buffer.limit() >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        LineParser parser = new LineParser(buffer, 1024);
+        int fieldCount = parser.parse(start, lineEnd(buffer, start, buffer.limit()));
+        String[] names = new String[fieldCount];
+        for (int f = 0; f < fieldCount; f++) {
+            names[f] = parser.string(f, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int from, int limit) {
+        int end = from;
+        while (end < limit && buffer.get(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    // Which field holds each column, or -1 where the file does not have it
+    private static class Layout {
+        final int headerFields;
+        final int songId;
+        final int title;
+        final int artist;
+        final int language;
+        final int genre;
+        final int releaseYear;
+        final int mood;
+        final int tempo;
+        final int popularity;
+        final int rating;
+
+        Layout(String[] header) {
+            headerFields = header.length;
+            songId = find(header, "songid", "id");
+            title = find(header, "title", "songname", "name");
+            artist = find(header, "artist", "singerartists", "singer", "artists");
+            language = find(header, "language");
+            genre = find(header, "genre");
+            releaseYear = find(header, "releaseyear", "year");
+            mood = find(header, "mood");
+            tempo = find(header, "tempo", "bpm");
+            popularity = find(header, "popularity");
+            rating = find(header, "userrating", "rating");
+        }
+
+        private static int find(String[] header, String... names) {
+            for (String name : names) {
+                for (int f = 0; f < header.length; f++) {
+                    if (header[f].replaceAll("[^a-zA-Z0-9]", "").equalsIgnoreCase(name)) {
+                        return f;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Parsed rows of one chunk, as columns
+    private static class Chunk {
+        String[] songIds = new String[1024];
+        String[] titles = new String[1024];
+        String[] artists = new String[1024];
+        String[] languages = new String[1024];
+        String[] genres = new String[1024];
+        String[] moods = new String[1024];
+        int[] releaseYears = new int[1024];
+        double[] tempos = new double[1024];
+        double[] popularities = new double[1024];
+        // Line of each row within the chunk (1-based), for rows without an id
+        int[] rowLines = new int[1024];
+        int count;
+        // Lines in the chunk, and errors by line within it (1-based)
+        long lines;
+        final List<RowError> errors = new ArrayList<>();
+
+        void add(String songId, String title, String artist, String language, String genre,
+                 int releaseYear, String mood, double tempo, double popularity) {
+            if (count == songIds.length) {
+                int capacity = count * 2;
+                songIds = Arrays.copyOf(songIds, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                artists = Arrays.copyOf(artists, capacity);
+                languages = Arrays.copyOf(languages, capacity);
+                genres = Arrays.copyOf(genres, capacity);
+                moods = Arrays.copyOf(moods, capacity);
+                releaseYears = Arrays.copyOf(releaseYears, capacity);
+                tempos = Arrays.copyOf(tempos, capacity);
+                popularities = Arrays.copyOf(popularities, capacity);
+                rowLines = Arrays.copyOf(rowLines, capacity);
+            }
+            songIds[count] = songId;
+            titles[count] = title;
+            artists[count] = artist;
+            languages[count] = language;
+            genres[count] = genre;
+            moods[count] = mood;
+            releaseYears[count] = releaseYear;
+            tempos[count] = tempo;
+            popularities[count] = popularity;
+            rowLines[count] = (int) lines + 1;
+            count++;
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final Layout layout;
+        Chunk chunk;
+        IOException failure;
+
+        ChunkTask(FileChannel channel, long start, long end, Layout layout) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.layout = layout;
+        }
+
+        @Override
+        protected void compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            chunk = new Chunk();
+            LineParser parser = new LineParser(buffer, layout.headerFields + 1);
+            int limit = buffer.limit();
+            for (int from = 0; from < limit; chunk.lines++) {
+                int to = lineEnd(buffer, from, limit);
+                int fieldCount = parser.parse(from, to);
+                if (fieldCount > 1 || parser.length(0) > 0) {
+                    try {
+                        parseRow(parser, fieldCount);
+                    } catch (RuntimeException e) {
+                        chunk.errors.add(new RowError(chunk.lines + 1, e.getMessage()));
+                    }
+                }
+                from = to + 1;
+            }
+        }
+
+        private void parseRow(LineParser parser, int fieldCount) {
+            // A leading unnamed column shifts every named one by one
+            int shift = fieldCount == layout.headerFields + 1 && layout.songId < 0 ? 1 : 0;
+            if (fieldCount != layout.headerFields + shift) {
+                throw new IllegalArgumentException("expected " + layout.headerFields + " fields, found " + fieldCount);
+            }
+            String songId = layout.songId >= 0 ? parser.string(layout.songId, charset)
+                    : shift == 1 ? parser.string(0, charset)
+                    : null;
+            String genre = category(parser, layout.genre, shift);
+            String mood = layout.mood >= 0 ? category(parser, layout.mood, shift) : moodForGenre(genre);
+            int releaseYear = layout.releaseYear >= 0 ? parser.parseInt(layout.releaseYear + shift) : 0;
+            double tempo = layout.tempo >= 0 ? parser.parseDouble(layout.tempo + shift) : Double.NaN;
+            double popularity = layout.popularity >= 0 ? parser.parseDouble(layout.popularity + shift)
+                    : layout.rating >= 0 ? parser.parseRating(layout.rating + shift)
+                    : 0;
+            chunk.add(songId, text(parser, layout.title, shift), category(parser, layout.artist, shift),
+                    category(parser, layout.language, shift), genre, releaseYear, mood, tempo, popularity);
+        }
+
+        private String text(LineParser parser, int column, int shift) {
+            return column >= 0 ? parser.string(column + shift, charset) : "";
+        }
+
+        private String category(LineParser parser, int column, int shift) {
+            return column >= 0 ? parser.category(column + shift, charset) : "";
+        }
+    }
+
+    /**
+     * Splits one line into fields without copying it: fields are recorded as byte ranges
+     * of the buffer (quotes and surrounding spaces excluded), and only turned into
+     * Strings or numbers on request.
+     */
+    private static class LineParser {
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+        private final ByteBuffer buffer;
+        private final int maxFields;
+        private final int[] starts;
+        private final int[] ends;
+        // Quoted fields containing "" escapes
+        private final boolean[] escaped;
+        private byte[] bytes = new byte[256];
+        // Strings already made from categorical fields, by their bytes (open addressing)
+        private byte[][] categoryKeys = new byte[256][];
+        private String[] categoryValues = new String[256];
+        private int categoryCount;
+
+        LineParser(ByteBuffer buffer, int maxFields) {
+            this.buffer = buffer;
+            this.maxFields = maxFields;
+            this.starts = new int[maxFields];
+            this.ends = new int[maxFields];
+            this.escaped = new boolean[maxFields];
+        }
+
+        /** Parses the line in [from, to) and returns its number of fields. */
+        int parse(int from, int to) {
+            if (to > from && buffer.get(to - 1) == '\r') {
+                to--;
+            }
+            int count = 0;
+            int p = from;
+            while (true) {
+                while (p < to && buffer.get(p) == ' ') {
+                    p++;
+                }
+                int start;
+                int end;
+                boolean hasEscapes = false;
+                if (p < to && buffer.get(p) == '"') {
+                    start = ++p;
+                    while (p < to) {
+                        if (buffer.get(p) == '"') {
+                            if (p + 1 < to && buffer.get(p + 1) == '"') {
+                                hasEscapes = true;
+                                p += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        p++;
+                    }
+                    end = p;
+                    // Skip the closing quote and anything up to the next comma
+                    while (p < to && buffer.get(p) != ',') {
+                        p++;
+                    }
+                } else {
+                    start = p;
+                    while (p < to && buffer.get(p) != ',') {
+                        p++;
+                    }
+                    end = p;
+                }
+                while (end > start && buffer.get(end - 1) == ' ') {
+                    end--;
+                }
+                if (count < maxFields) {
+                    starts[count] = start;
+                    ends[count] = end;
+                    escaped[count] = hasEscapes;
+                }
+                count++;
+                if (p >= to) {
+                    return count;
+                }
+                p++;
+            }
+        }
+
+        int length(int field) {
+            return ends[field] - starts[field];
+        }
+
+        String string(int field, Charset charset) {
+            int length = length(field);
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(starts[field], bytes, 0, length);
+            String value = new String(bytes, 0, length, charset).trim();
+            return escaped[field] ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * Like string(), but returns the same String for fields with the same bytes, so
+         * repetitive columns such as artist and genre do not allocate one per row.
+         */
+        String category(int field, Charset charset) {
+            int length = length(field);
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(starts[field], bytes, 0, length);
+            int hash = escaped[field] ? 1 : 0;
+            for (int k = 0; k < length; k++) {
+                hash = hash * 31 + bytes[k];
+            }
+            int mask = categoryKeys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            for (; categoryKeys[slot] != null; slot = (slot + 1) & mask) {
+                byte[] key = categoryKeys[slot];
+                if (Arrays.equals(key, 0, key.length - 1, bytes, 0, length) && key[key.length - 1] == (escaped[field] ? 1 : 0)) {
+                    return categoryValues[slot];
+                }
+            }
+            String value = string(field, charset);
+            // The key's last byte records whether the field had "" escapes
+            byte[] key = Arrays.copyOf(bytes, length + 1);
+            key[length] = (byte) (escaped[field] ? 1 : 0);
+            categoryKeys[slot] = key;
+            categoryValues[slot] = value;
+            if (++categoryCount * 2 > categoryKeys.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        private void rehash() {
+            byte[][] keys = categoryKeys;
+            String[] values = categoryValues;
+            categoryKeys = new byte[keys.length * 2][];
+            categoryValues = new String[keys.length * 2];
+            int mask = categoryKeys.length - 1;
+            for (int k = 0; k < keys.length; k++) {
+                if (keys[k] == null) {
+                    continue;
+                }
+                byte[] key = keys[k];
+                int hash = key[key.length - 1];
+                for (int b = 0; b < key.length - 1; b++) {
+                    hash = hash * 31 + key[b];
+                }
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (categoryKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                categoryKeys[slot] = key;
+                categoryValues[slot] = values[k];
+            }
+        }
+
+        int parseInt(int field) {
+            int p = starts[field];
+            int end = ends[field];
+            boolean negative = p < end && buffer.get(p) == '-';
+            if (negative || (p < end && buffer.get(p) == '+')) {
+                p++;
+            }
+            if (p == end || end - p > 9) {
+                return Integer.parseInt(string(field, StandardCharsets.ISO_8859_1));
+            }
+            int value = 0;
+            for (; p < end; p++) {
+                if (!isDigit(buffer.get(p))) {
+                    return Integer.parseInt(string(field, StandardCharsets.ISO_8859_1));
+                }
+                value = value * 10 + (buffer.get(p) - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        double parseDouble(int field) {
+            return parseDouble(starts[field], ends[field]);
+        }
+
+        // A rating such as 8.8/10 as a fraction; without a scale, ratings are out of 10
+        double parseRating(int field) {
+            int end = ends[field];
+            int p = starts[field];
+            int numberEnd = p;
+            while (numberEnd < end && (isDigit(buffer.get(numberEnd)) || buffer.get(numberEnd) == '.')) {
+                numberEnd++;
+            }
+            double value = parseDouble(p, numberEnd);
+            double scale = 10;
+            if (numberEnd < end && buffer.get(numberEnd) == '/') {
+                scale = parseDouble(numberEnd + 1, end);
+            }
+            return value / scale;
+        }
+
+        /**
+         * Decimal digits with an optional sign, fraction and exponent are converted exactly
+         * when the significand fits in 53 bits and the power of ten is at most 22, since
+         * both are then exact doubles and one multiply or divide rounds correctly. Anything
+         * else goes through Double.parseDouble.
+         */
+        private double parseDouble(int from, int to) {
+            int p = from;
+            boolean negative = p < to && buffer.get(p) == '-';
+            if (negative || (p < to && buffer.get(p) == '+')) {
+                p++;
+            }
+            long significand = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean fast = true;
+            int digitsStart = p;
+            for (; p < to && isDigit(buffer.get(p)); p++) {
+                if (digits < 18) {
+                    significand = significand * 10 + (buffer.get(p) - '0');
+                    if (significand != 0) {
+                        digits++;
+                    }
+                } else {
+                    fast = false;
+                }
+            }
+            int integerDigits = p - digitsStart;
+            int fractionDigits = 0;
+            if (p < to && buffer.get(p) == '.') {
+                for (p++; p < to && isDigit(buffer.get(p)); p++, fractionDigits++) {
+                    if (digits < 18) {
+                        significand = significand * 10 + (buffer.get(p) - '0');
+                        if (significand != 0) {
+                            digits++;
+                        }
+                        exponent--;
+                    } else {
+                        fast = false;
+                    }
+                }
+            }
+            // Exponents, NaN, Infinity and malformed input take the slow path
+            if (integerDigits + fractionDigits == 0 || p != to) {
+                fast = false;
+            }
+            if (fast && significand < (1L << 53) && exponent >= -22) {
+                double value = exponent < 0 ? significand / POWERS_OF_TEN[-exponent] : significand;
+                return negative ? -value : value;
+            }
+            int length = to - from;
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(from, bytes, 0, length);
+            return Double.parseDouble(new String(bytes, 0, length, StandardCharsets.ISO_8859_1));
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+    }
+}
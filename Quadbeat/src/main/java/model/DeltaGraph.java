@@ -0,0 +1,206 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A CSR graph plus the songs inserted and removed since it was built. Instances are
+ * immutable: an update makes a new one, so readers holding an older instance are never
+ * disturbed.
+ *
+ * A node that only gained edges keeps reading its base list, followed by the edges
+ * appended since; a node that lost one, or is new, has a full replacement list. Appended
+ * edges share their arrays with the older instances, which never read past their own
+ * count, so an insert costs a copy of the per-node table and one slot per new edge,
+ * rather than a copy of each neighbor's list. Only the newest instance of a line of
+ * updates appends in place; updating an older one copies the lists first.
+ *
+ * Neighbor lists come out in the order a full rebuild would produce: a new node has the
+ * highest index, so it is appended to its neighbors' lists, and its own list is ordered
+ * by index. Removed nodes keep their index but lose all their edges.
+ */
+public class DeltaGraph implements Graph {
+    private static final Edges NONE = new Edges(new int[0], new double[0], 0, true);
+
+    private final CsrGraph base;
+    private final int nodeCount;
+    // Edges of each node beyond or instead of its base list, null where the base list applies as is
+    private final Edges[] edges;
+    private final long slots;
+    // Slots held in edges rather than the base graph
+    private final long outsideBase;
+    // Updates made so far in this line, of which this instance is the given one
+    private final Line line;
+    private final int version;
+
+    public DeltaGraph(CsrGraph base) {
+        this(base, base.nodeCount(), new Edges[base.nodeCount()], base.getTargets().length, 0, new Line(), 0);
+    }
+
+    private DeltaGraph(CsrGraph base, int nodeCount, Edges[] edges, long slots, long outsideBase, Line line,
+                       int version) {
+        this.base = base;
+        this.nodeCount = nodeCount;
+        this.edges = edges;
+        this.slots = slots;
+        this.outsideBase = outsideBase;
+        this.line = line;
+        this.version = version;
+    }
+
+    /** Adds node nodeCount() with the given edges; neighbors must be ascending. */
+    public DeltaGraph withNode(int[] neighbors, double[] neighborWeights, int count) {
+        if (version != line.version) {
+            return owned().withNode(neighbors, neighborWeights, count);
+        }
+        int node = nodeCount;
+        Edges[] newEdges = Arrays.copyOf(edges, node + 1);
+        newEdges[node] = new Edges(Arrays.copyOf(neighbors, count), Arrays.copyOf(neighborWeights, count), count, true);
+        for (int k = 0; k < count; k++) {
+            int neighbor = neighbors[k];
+            Edges list = edges[neighbor] != null ? edges[neighbor] : Edges.APPENDED;
+            newEdges[neighbor] = list.with(node, neighborWeights[k]);
+        }
+        return new DeltaGraph(base, node + 1, newEdges, slots + 2L * count, outsideBase + 2L * count, line,
+                ++line.version);
+    }
+
+    /** Drops every edge of node, which keeps its index. */
+    public DeltaGraph withoutNode(int node) {
+        if (version != line.version) {
+            return owned().withoutNode(node);
+        }
+        Edges[] newEdges = edges.clone();
+        long newOutsideBase = outsideBase;
+        int degree = degree(node);
+        for (int k = 0; k < degree; k++) {
+            int neighbor = target(node, k);
+            int neighborDegree = degree(neighbor);
+            int[] list = new int[neighborDegree - 1];
+            double[] listWeights = new double[neighborDegree - 1];
+            int kept = 0;
+            for (int m = 0; m < neighborDegree; m++) {
+                if (target(neighbor, m) != node) {
+                    list[kept] = target(neighbor, m);
+                    listWeights[kept++] = weight(neighbor, m);
+                }
+            }
+            newOutsideBase += kept - outside(neighbor);
+            newEdges[neighbor] = new Edges(list, listWeights, kept, true);
+        }
+        newOutsideBase -= outside(node);
+        newEdges[node] = NONE;
+        return new DeltaGraph(base, nodeCount, newEdges, slots - 2L * degree, newOutsideBase, line, ++line.version);
+    }
+
+    /** Number of edge slots held outside the base graph, as appended or replacement lists. */
+    public long slotsOutsideBase() {
+        return outsideBase;
+    }
+
+    // Slots of node held outside the base graph
+    private int outside(int node) {
+        return edges[node] == null ? 0 : edges[node].size;
+    }
+
+    // This graph in a line of its own, with copies of the arrays it shares with the others
+    private DeltaGraph owned() {
+        Edges[] copies = new Edges[edges.length];
+        for (int node = 0; node < edges.length; node++) {
+            Edges list = edges[node];
+            if (list != null) {
+                copies[node] = new Edges(Arrays.copyOf(list.targets, list.size), Arrays.copyOf(list.weights, list.size),
+                        list.size, list.full);
+            }
+        }
+        return new DeltaGraph(base, nodeCount, copies, slots, outsideBase, new Line(), 0);
+    }
+
+    @Override
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long edgeCount() {
+        return slots / 2;
+    }
+
+    @Override
+    public int degree(int node) {
+        Edges list = edges[node];
+        if (list == null) {
+            return base.degree(node);
+        }
+        return list.full ? list.size : base.degree(node) + list.size;
+    }
+
+    @Override
+    public int target(int node, int k) {
+        Edges list = edges[node];
+        if (list == null) {
+            return base.target(node, k);
+        }
+        if (!list.full) {
+            int baseDegree = base.degree(node);
+            if (k < baseDegree) {
+                return base.target(node, k);
+            }
+            k -= baseDegree;
+        }
+        return list.targets[k];
+    }
+
+    @Override
+    public double weight(int node, int k) {
+        Edges list = edges[node];
+        if (list == null) {
+            return base.weight(node, k);
+        }
+        if (!list.full) {
+            int baseDegree = base.degree(node);
+            if (k < baseDegree) {
+                return base.weight(node, k);
+            }
+            k -= baseDegree;
+        }
+        return list.weights[k];
+    }
+
+    private static final class Line {
+        int version;
+    }
+
+    /*
+     * The first size edges of the arrays, either the whole neighbor list (full) or those
+     * following the base list. Never changed once made: appending makes a new one sharing
+     * the arrays while they have room.
+     */
+    private static final class Edges {
+        static final Edges APPENDED = new Edges(new int[0], new double[0], 0, false);
+
+        final int[] targets;
+        final double[] weights;
+        final int size;
+        final boolean full;
+
+        Edges(int[] targets, double[] weights, int size, boolean full) {
+            this.targets = targets;
+            this.weights = weights;
+            this.size = size;
+            this.full = full;
+        }
+
+        Edges with(int target, double weight) {
+            int[] newTargets = targets;
+            double[] newWeights = weights;
+            if (size == targets.length) {
+                int capacity = Math.max(4, size + (size >> 1));
+                newTargets = Arrays.copyOf(targets, capacity);
+                newWeights = Arrays.copyOf(weights, capacity);
+            }
+            newTargets[size] = target;
+            newWeights[size] = weight;
+            return new Edges(newTargets, newWeights, size + 1, full);
+        }
+    }
+}
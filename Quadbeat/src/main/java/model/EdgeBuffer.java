@@ -0,0 +1,42 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive list of undirected edges (from, to, weight), used to collect
+ * edges on worker threads before they are merged into a graph.
+ */
+public class EdgeBuffer {
+    private int[] from;
+    private int[] to;
+    private double[] weight;
+    private int size;
+
+    public EdgeBuffer() {
+        this(64);
+    }
+
+    public EdgeBuffer(int capacity) {
+        from = new int[capacity];
+        to = new int[capacity];
+        weight = new double[capacity];
+    }
+
+    public void add(int source, int target, double edgeWeight) {
+        if (size == from.length) {
+            int capacity = Math.max(16, size * 2);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            weight = Arrays.copyOf(weight, capacity);
+        }
+        from[size] = source;
+        to[size] = target;
+        weight[size] = edgeWeight;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int from(int index) { return from[index]; }
+    public int to(int index) { return to[index]; }
+    public double weight(int index) { return weight[index]; }
+}
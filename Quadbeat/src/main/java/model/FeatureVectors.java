@@ -0,0 +1,111 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Every song as the handful of features the edge weight rules read: genre, mood and
+ * artist codes and tempo and popularity, packed into two flat arrays, 28 bytes a song.
+ * That is all an approximate index needs to compare two songs without a graph; the
+ * same comparisons as one-hot genre and mood vectors, without their width.
+ *
+ * Distances are 1 - the edge weight the graph would give the pair, plus a tie-break of
+ * under 0.05 that grows with the tempo and popularity gaps. Weights move in steps of
+ * 0.1, so the tie-break never reorders two songs the graph ranks apart, but it gives
+ * the many songs the graph scores alike an order to be searched in. A missing tempo or
+ * popularity, which loads as NaN, counts as the largest gap.
+ */
+public class FeatureVectors {
+    private static final int CODES = 3;
+    private static final int VALUES = 2;
+    // Tempo gaps past this count as the largest tie-break
+    private static final double TEMPO_RANGE = 200;
+    private static final double TIE_BREAK = 0.025;
+
+    private int[] codes;
+    private double[] values;
+    private int size;
+    // Songs written to the shared arrays, by whichever copy is the newest
+    private Extent extent = new Extent();
+
+    public FeatureVectors(int capacity) {
+        codes = new int[Math.max(1, capacity) * CODES];
+        values = new double[Math.max(1, capacity) * VALUES];
+    }
+
+    /** Encodes every song in the table, removed ones included, at their indices. */
+    public static FeatureVectors of(SongTable songs) {
+        FeatureVectors vectors = new FeatureVectors(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            vectors.add(songs, i);
+        }
+        return vectors;
+    }
+
+    /**
+     * A copy that songs can be added to without changing this one. It shares the arrays,
+     * appending past the songs this one reads, unless another copy has appended first.
+     */
+    public FeatureVectors copy() {
+        FeatureVectors copy = new FeatureVectors(0);
+        copy.codes = codes;
+        copy.values = values;
+        copy.size = size;
+        copy.extent = extent;
+        return copy;
+    }
+
+    /** Appends the song at index i of the table, which must be the next index. */
+    public void add(SongTable songs, int i) {
+        if (i != size) {
+            throw new IllegalArgumentException("Expected song " + size + ", got " + i);
+        }
+        if (size != extent.songs || size * CODES == codes.length) {
+            int capacity = size * CODES == codes.length ? codes.length * 2 : codes.length;
+            codes = Arrays.copyOf(codes, capacity);
+            values = Arrays.copyOf(values, capacity / CODES * VALUES);
+            extent = new Extent();
+        }
+        codes[size * CODES] = songs.getGenreCodes()[i];
+        codes[size * CODES + 1] = songs.getMoodCodes()[i];
+        codes[size * CODES + 2] = songs.getArtistCodes()[i];
+        values[size * VALUES] = songs.getTempo(i);
+        values[size * VALUES + 1] = songs.getPopularity(i);
+        extent.songs = ++size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** The weight the graph of this type gives the edge between songs i and j, 0 below 0.3 included. */
+    public double weight(GraphBuilder.GraphType type, int i, int j) {
+        boolean sameGenre = codes[i * CODES] == codes[j * CODES];
+        boolean sameMood = codes[i * CODES + 1] == codes[j * CODES + 1];
+        boolean sameArtist = codes[i * CODES + 2] == codes[j * CODES + 2];
+        boolean similarTempo = GraphBuilder.similarTempo(values[i * VALUES], values[j * VALUES]);
+        boolean similarPopularity = GraphBuilder.similarPopularity(values[i * VALUES + 1], values[j * VALUES + 1]);
+        switch (type) {
+            case ARTIST_BASED:
+                return GraphBuilder.artistBasedWeight(sameArtist, sameGenre, sameMood, similarTempo);
+            case MOOD_BASED:
+                return GraphBuilder.moodBasedWeight(sameMood, similarTempo, sameGenre, similarPopularity);
+            default:
+                return GraphBuilder.songBasedWeight(sameGenre, similarTempo, sameMood, similarPopularity);
+        }
+    }
+
+    public double distance(GraphBuilder.GraphType type, int i, int j) {
+        double tempoGap = gap(Math.abs(values[i * VALUES] - values[j * VALUES]) / TEMPO_RANGE);
+        double popularityGap = gap(Math.abs(values[i * VALUES + 1] - values[j * VALUES + 1]));
+        return 1 - weight(type, i, j) + TIE_BREAK * (tempoGap + popularityGap);
+    }
+
+    // A gap scaled to at most 1, with a NaN one at 1 so it cannot poison the distance
+    private static double gap(double scaled) {
+        return scaled <= 1 ? scaled : 1;
+    }
+
+    private static final class Extent {
+        int songs;
+    }
+}
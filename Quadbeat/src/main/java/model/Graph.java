@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Read-only weighted, undirected song graph. Songs are addressed by their dense
+ * index in the catalog, and each node's neighbors by position 0 .. degree - 1.
+ */
+public interface Graph {
+    int nodeCount();
+
+    /** Number of undirected edges; every edge appears in both endpoints' neighbor lists. */
+    long edgeCount();
+
+    int degree(int node);
+
+    int target(int node, int k);
+
+    double weight(int node, int k);
+}
@@ -0,0 +1,82 @@
+package model;
+
+/**
+ * Heap footprint of a graph as CSR arrays versus the HashMap&lt;String, List&lt;Edge&gt;&gt;
+ * adjacency it replaced. Sizes assume a 64-bit JVM with compressed oops: 12-byte
+ * object headers, 4-byte references and 8-byte alignment. Song id Strings are shared
+ * with the Song objects in both layouts, so they are not counted.
+ */
+public class GraphMemoryReport {
+    private static final int HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    // HashMap: size, threshold, modCount, loadFactor and four references
+    private static final int HASH_MAP = align(HEADER + 4 * 4 + 4 * REFERENCE);
+    // HashMap.Node: hash, key, value, next
+    private static final int HASH_MAP_NODE = align(HEADER + 4 + 3 * REFERENCE);
+    // ArrayList: modCount, size, elementData
+    private static final int ARRAY_LIST = align(HEADER + 4 + 4 + REFERENCE);
+    // Edge: targetSongId, weight
+    private static final int EDGE = align(HEADER + REFERENCE + 8);
+
+    public static long csrBytes(CsrGraph graph) {
+        return align(ARRAY_HEADER + 4L * graph.getOffsets().length)
+                + align(ARRAY_HEADER + 4L * graph.getTargets().length)
+                + align(ARRAY_HEADER + 8L * graph.getWeights().length);
+    }
+
+    /**
+     * Estimates the adjacency map the previous GraphBuilder produced for this graph:
+     * one map entry and one ArrayList per song, grown from the default capacity one
+     * edge at a time, and one Edge object per direction of every edge.
+     */
+    public static long adjacencyMapBytes(Graph graph) {
+        int nodes = graph.nodeCount();
+        long bytes = HASH_MAP + align(ARRAY_HEADER + (long) REFERENCE * tableSize(nodes));
+        bytes += (long) nodes * (HASH_MAP_NODE + ARRAY_LIST);
+        for (int node = 0; node < nodes; node++) {
+            int degree = graph.degree(node);
+            if (degree > 0) {
+                bytes += align(ARRAY_HEADER + (long) REFERENCE * arrayListCapacity(degree));
+                bytes += (long) degree * EDGE;
+            }
+        }
+        return bytes;
+    }
+
+    public static void print(String name, CsrGraph graph) {
+        long csr = csrBytes(graph);
+        long map = adjacencyMapBytes(graph);
+        System.out.printf("%s: %,d nodes, %,d edges%n", name, graph.nodeCount(), graph.edgeCount());
+        System.out.printf("  HashMap<String, List<Edge>>: %,d bytes%n", map);
+        System.out.printf("  CSR (int[] offsets, int[] targets, double[] weights): %,d bytes (%.1fx smaller)%n",
+                csr, (double) map / csr);
+    }
+
+    // Table length HashMap settles on after n puts with the default load factor
+    private static int tableSize(int entries) {
+        int size = 16;
+        while (entries > size * 0.75) {
+            size *= 2;
+        }
+        return size;
+    }
+
+    // Capacity ArrayList reaches after `size` adds: 10, then growing by half each time
+    private static int arrayListCapacity(int size) {
+        int capacity = 10;
+        while (capacity < size) {
+            capacity += capacity >> 1;
+        }
+        return capacity;
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
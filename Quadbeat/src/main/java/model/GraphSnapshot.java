@@ -0,0 +1,240 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary snapshot of one state of a built GraphBuilder: the song table and all three
+ * graphs as CSR, tagged with the CRC32 of the CSV they were built from. Reading one back is a handful
+ * of bulk copies out of a memory-mapped file instead of parsing the CSV and rebuilding.
+ *
+ * Layout (big-endian):
+ *   int magic, int version, long source checksum
+ *   artist, language, genre and mood dictionaries: int count, then strings
+ *   int song count, then song id and title of each row
+ *   int columns: artist, language, genre and mood codes, release years
+ *   double columns: tempos, popularities
+ *   byte column: 1 for removed rows, else 0
+ *   song, artist and mood graphs: int[n + 1] offsets, int[] targets, double[] weights
+ *   long CRC32 of everything before it
+ * Strings are an int byte length followed by UTF-8.
+ *
+ * Bump VERSION whenever the layout or the edge weight rules change.
+ */
+public class GraphSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(GraphSnapshot.class);
+    private static final int MAGIC = 0x5142534E; // "QBSN"
+    private static final int VERSION = 3;
+
+    /** Checksum identifying the CSV a snapshot was built from. */
+    public static long checksum(Path csvFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Writes the builder's songs and graphs as of the start of the write; inserts and
+     * removals published while it runs are left out. The file is replaced atomically.
+     */
+    public static void write(Path snapshotFile, long sourceChecksum, GraphBuilder builder) throws IOException {
+        GraphBuilder.State state = builder.getState();
+        SongTable songs = state.getSongTable();
+        int size = songs.size();
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(temp), crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceChecksum);
+
+            writeDictionary(out, songs.getArtistNames());
+            writeDictionary(out, songs.getLanguageNames());
+            writeDictionary(out, songs.getGenreNames());
+            writeDictionary(out, songs.getMoodNames());
+
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                writeString(out, songs.getSongId(i));
+                writeString(out, songs.getTitle(i));
+            }
+            writeInts(out, songs.getArtistCodes(), size);
+            writeInts(out, songs.getLanguageCodes(), size);
+            writeInts(out, songs.getGenreCodes(), size);
+            writeInts(out, songs.getMoodCodes(), size);
+            writeInts(out, songs.getReleaseYears(), size);
+            writeDoubles(out, songs.getTempos(), size);
+            writeDoubles(out, songs.getPopularities(), size);
+            for (int i = 0; i < size; i++) {
+                out.writeBoolean(songs.isRemoved(i));
+            }
+
+            for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+                Graph current = state.getGraph(type);
+                CsrGraph graph = current instanceof CsrGraph csr ? csr : CsrGraph.copyOf(current);
+                writeInts(out, graph.getOffsets(), size + 1);
+                writeInts(out, graph.getTargets(), graph.getTargets().length);
+                writeDoubles(out, graph.getWeights(), graph.getWeights().length);
+            }
+
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot into the builder. Returns false, leaving the builder untouched, if
+     * the file is missing, corrupt, from another format version, or was built from a
+     * different CSV. Pass a negative checksum to accept a snapshot of any CSV.
+     */
+    public static boolean read(Path snapshotFile, long sourceChecksum, GraphBuilder builder) {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < 24 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                log.info("Ignoring snapshot {}: unknown format", snapshotFile);
+                return false;
+            }
+            if (sourceChecksum >= 0 && buffer.getLong(8) != sourceChecksum) {
+                log.info("Ignoring snapshot {}: built from a different CSV", snapshotFile);
+                return false;
+            }
+            int bodyLength = buffer.limit() - 8;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, bodyLength));
+            if (buffer.getLong(bodyLength) != crc.getValue()) {
+                log.warn("Ignoring snapshot {}: checksum mismatch", snapshotFile);
+                return false;
+            }
+
+            buffer.position(16);
+            SongTable.Dictionary artists = readDictionary(buffer);
+            SongTable.Dictionary languages = readDictionary(buffer);
+            SongTable.Dictionary genres = readDictionary(buffer);
+            SongTable.Dictionary moods = readDictionary(buffer);
+
+            int size = buffer.getInt();
+            String[] songIds = new String[size];
+            String[] titles = new String[size];
+            for (int i = 0; i < size; i++) {
+                songIds[i] = readString(buffer);
+                titles[i] = readString(buffer);
+            }
+            int[] artistCodes = readInts(buffer, size);
+            int[] languageCodes = readInts(buffer, size);
+            int[] genreCodes = readInts(buffer, size);
+            int[] moodCodes = readInts(buffer, size);
+            int[] releaseYears = readInts(buffer, size);
+            double[] tempos = readDoubles(buffer, size);
+            double[] popularities = readDoubles(buffer, size);
+            boolean[] removed = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                removed[i] = buffer.get() != 0;
+            }
+
+            // Re-encoding in row order hands out the same codes the dictionaries were written with
+            SongTable songs = new SongTable(Math.max(16, size));
+            for (int i = 0; i < size; i++) {
+                songs.add(songIds[i], titles[i], artists.decode(artistCodes[i]), languages.decode(languageCodes[i]),
+                        genres.decode(genreCodes[i]), releaseYears[i], moods.decode(moodCodes[i]),
+                        tempos[i], popularities[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                if (removed[i]) {
+                    songs.remove(i);
+                }
+            }
+
+            CsrGraph songBased = readGraph(buffer, size);
+            CsrGraph artistBased = readGraph(buffer, size);
+            CsrGraph moodBased = readGraph(buffer, size);
+            builder.restore(songs, songBased, artistBased, moodBased);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Error reading snapshot {}: {}", snapshotFile, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, SongTable.Dictionary dictionary) throws IOException {
+        out.writeInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            writeString(out, dictionary.decode(code));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        for (int k = 0; k < count; k++) {
+            out.writeInt(values[k]);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+        for (int k = 0; k < count; k++) {
+            out.writeDouble(values[k]);
+        }
+    }
+
+    private static SongTable.Dictionary readDictionary(ByteBuffer buffer) {
+        SongTable.Dictionary dictionary = new SongTable.Dictionary();
+        int count = buffer.getInt();
+        for (int code = 0; code < count; code++) {
+            dictionary.encode(readString(buffer));
+        }
+        return dictionary;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return values;
+    }
+
+    private static CsrGraph readGraph(ByteBuffer buffer, int nodeCount) {
+        int[] offsets = readInts(buffer, nodeCount + 1);
+        int slots = offsets[nodeCount];
+        int[] targets = readInts(buffer, slots);
+        double[] weights = readDoubles(buffer, slots);
+        return new CsrGraph(offsets, targets, weights);
+    }
+}
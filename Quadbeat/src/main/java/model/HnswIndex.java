@@ -0,0 +1,279 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchical navigable small world index (Malkov and Yashunin) for approximate nearest
+ * neighbour search over the songs, under any distance between two song indices. Each
+ * song is a node of a layer-0 proximity graph with up to 2m links, and of each layer
+ * above it up to its randomly drawn level, with up to m links; each layer up has about
+ * 1/m as many nodes. A search descends greedily from the top layer and then explores
+ * layer 0 best first, keeping the ef nearest songs found: a larger ef finds the true
+ * nearest more often, at the cost of more distance computations.
+ *
+ * Songs are added in index order and never taken out; removed songs stay in as
+ * stepping stones, and callers filter them from results. add() changes the index in
+ * place, so it is for building one before anything searches it; withNode() adds to a
+ * copy instead, leaving the index as it was for searches still running on it.
+ */
+public class HnswIndex {
+    // Levels are drawn from a geometric distribution, capped here
+    private static final int MAX_LEVEL = 16;
+
+    /** Distance between two indexed songs; smaller is nearer. */
+    public interface Distance {
+        double between(int a, int b);
+    }
+
+    private final Distance distance;
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    // Shared with the copies withNode makes, of which only the newest is ever added to
+    private final SplittableRandom random;
+    private final TraversalScratch buildScratch;
+    // links[node][level] holds the node's link count at [0], then the linked nodes
+    private int[][][] links = new int[16][][];
+    // The link lists of nodes below this are shared with the index this one was copied from
+    private final int sharedNodes;
+    private int size;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    public HnswIndex(Distance distance, int m, int efConstruction, long seed) {
+        if (m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("m must be at least 2 and efConstruction at least 1");
+        }
+        this.distance = distance;
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelFactor = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.buildScratch = new TraversalScratch();
+        this.sharedNodes = 0;
+    }
+
+    // A copy of from under the given distance, sharing its link lists until they change
+    private HnswIndex(HnswIndex from, Distance distance) {
+        this.distance = distance;
+        this.m = from.m;
+        this.efConstruction = from.efConstruction;
+        this.levelFactor = from.levelFactor;
+        this.random = from.random;
+        this.buildScratch = from.buildScratch;
+        this.links = from.links.clone();
+        this.sharedNodes = from.size;
+        this.size = from.size;
+        this.entryPoint = from.entryPoint;
+        this.topLevel = from.topLevel;
+    }
+
+    /**
+     * A copy of this index with the song at the next index added, as add() would, while
+     * this one stays as it was. Only the link lists the new song changes are copied; the
+     * distance must also cover the new song.
+     */
+    public HnswIndex withNode(int node, Distance distance) {
+        HnswIndex copy = new HnswIndex(this, distance);
+        copy.add(node);
+        return copy;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double distance(int a, int b) {
+        return distance.between(a, b);
+    }
+
+    /** Adds the song with the next index, linking it to its nearest songs on each of its layers. */
+    public void add(int node) {
+        if (node != size) {
+            throw new IllegalArgumentException("Expected song " + size + ", got " + node);
+        }
+        if (node == links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelFactor));
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        size++;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+
+        TraversalScratch scratch = buildScratch;
+        scratch.begin(size);
+        int[] found = new int[efConstruction];
+        double[] foundDistance = new double[efConstruction];
+        int[] entries = {entryPoint};
+        int entryCount = 1;
+        for (int l = topLevel; l > level; l--) {
+            searchLayer(node, entries, entryCount, 1, l, scratch, found, foundDistance);
+            entries[0] = found[0];
+        }
+        int[] picked = new int[maxLinks(0)];
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            int count = searchLayer(node, entries, entryCount, efConstruction, l, scratch, found, foundDistance);
+            int pickedCount = select(found, foundDistance, count, m, picked);
+            int[] own = links[node][l];
+            for (int k = 0; k < pickedCount; k++) {
+                own[++own[0]] = picked[k];
+                link(picked[k], node, l);
+            }
+            // The next layer down starts from everything found on this one
+            entries = Arrays.copyOf(found, count);
+            entryCount = count;
+        }
+        if (level > topLevel) {
+            entryPoint = node;
+            topLevel = level;
+        }
+    }
+
+    /** The ef songs nearest the query song that the search finds, nearest first, the query included. */
+    public int[] search(int query, int ef) {
+        TraversalScratch scratch = new TraversalScratch();
+        scratch.begin(size);
+        int[] found = new int[Math.max(1, ef)];
+        int count = search(query, ef, scratch, found, new double[found.length]);
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Fills found and foundDistance with the ef nearest songs the search finds, nearest
+     * first, and returns how many there are. The scratch space must have been begun for
+     * at least size() nodes; each layer is searched as a restart of it.
+     */
+    int search(int query, int ef, TraversalScratch scratch, int[] found, double[] foundDistance) {
+        if (entryPoint < 0) {
+            return 0;
+        }
+        int[] entries = {entryPoint};
+        for (int l = topLevel; l > 0; l--) {
+            searchLayer(query, entries, 1, 1, l, scratch, found, foundDistance);
+            entries[0] = found[0];
+        }
+        return searchLayer(query, entries, 1, ef, 0, scratch, found, foundDistance);
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    /*
+     * Best-first search of one layer from the entry songs. The candidates to expand wait
+     * in the scratch heap, nearest first; the ef nearest songs seen so far are kept
+     * sorted in found. The search stops once the nearest candidate left is further than
+     * all of those.
+     */
+    private int searchLayer(int query, int[] entries, int entryCount, int ef, int level, TraversalScratch scratch,
+                            int[] found, double[] foundDistance) {
+        scratch.restart();
+        IndexedMinHeap candidates = scratch.heap;
+        int count = 0;
+        for (int k = 0; k < entryCount; k++) {
+            int entry = entries[k];
+            if (!scratch.reached(entry)) {
+                scratch.reach(entry);
+                double entryDistance = distance.between(query, entry);
+                count = insert(found, foundDistance, count, ef, entry, entryDistance);
+                candidates.offer(entry, entryDistance);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            if (count == ef && candidates.peekKey() > foundDistance[count - 1]) {
+                break;
+            }
+            int current = candidates.poll();
+            scratch.expanded++;
+            int[] neighbors = links[current][level];
+            for (int k = 1; k <= neighbors[0]; k++) {
+                int next = neighbors[k];
+                if (scratch.reached(next)) {
+                    continue;
+                }
+                scratch.reach(next);
+                scratch.offered++;
+                double nextDistance = distance.between(query, next);
+                if (count < ef || nextDistance < foundDistance[count - 1]) {
+                    count = insert(found, foundDistance, count, ef, next, nextDistance);
+                    candidates.offer(next, nextDistance);
+                }
+            }
+        }
+        return count;
+    }
+
+    // Inserts into the sorted, at most ef long found list, dropping the furthest if full
+    private static int insert(int[] found, double[] foundDistance, int count, int ef, int node, double nodeDistance) {
+        int position = count < ef ? count : count - 1;
+        while (position > 0 && foundDistance[position - 1] > nodeDistance) {
+            found[position] = found[position - 1];
+            foundDistance[position] = foundDistance[position - 1];
+            position--;
+        }
+        found[position] = node;
+        foundDistance[position] = nodeDistance;
+        return count < ef ? count + 1 : count;
+    }
+
+    /*
+     * Picks at most max of the candidates, which are sorted nearest first: a candidate is
+     * picked if it is nearer the base song than any song already picked, so links point
+     * in different directions rather than all into the nearest cluster; the slots left
+     * are filled with the nearest of the rest.
+     */
+    private int select(int[] candidates, double[] candidateDistance, int count, int max, int[] picked) {
+        int pickedCount = 0;
+        boolean[] skipped = new boolean[count];
+        for (int k = 0; k < count && pickedCount < max; k++) {
+            boolean diverse = true;
+            for (int p = 0; p < pickedCount && diverse; p++) {
+                diverse = distance.between(candidates[k], picked[p]) >= candidateDistance[k];
+            }
+            if (diverse) {
+                picked[pickedCount++] = candidates[k];
+            } else {
+                skipped[k] = true;
+            }
+        }
+        for (int k = 0; k < count && pickedCount < max; k++) {
+            if (skipped[k]) {
+                picked[pickedCount++] = candidates[k];
+            }
+        }
+        return pickedCount;
+    }
+
+    // Links from to target on the level, re-picking from's links if it has too many
+    private void link(int from, int target, int level) {
+        if (from < sharedNodes) {
+            links[from] = links[from].clone();
+            links[from][level] = links[from][level].clone();
+        }
+        int[] own = links[from][level];
+        if (own[0] < own.length - 1) {
+            own[++own[0]] = target;
+            return;
+        }
+        int count = own[0] + 1;
+        int[] candidates = new int[count];
+        double[] candidateDistance = new double[count];
+        int sorted = 0;
+        for (int k = 1; k <= own[0]; k++) {
+            sorted = insert(candidates, candidateDistance, sorted, count, own[k], distance.between(from, own[k]));
+        }
+        sorted = insert(candidates, candidateDistance, sorted, count, target, distance.between(from, target));
+        int[] picked = new int[own.length - 1];
+        int pickedCount = select(candidates, candidateDistance, sorted, picked.length, picked);
+        own[0] = pickedCount;
+        System.arraycopy(picked, 0, own, 1, pickedCount);
+    }
+}
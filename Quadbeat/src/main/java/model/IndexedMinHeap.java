@@ -0,0 +1,120 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of node indices keyed by a double, with decrease-key. Each node's
+ * slot in the heap is tracked so an entry can be found and moved up in O(log n)
+ * without a second copy being pushed. Emptying the heap with clear() only touches
+ * the nodes still in it, so a heap sized for the whole catalog can be reused across
+ * searches that each visit a handful of nodes.
+ */
+public class IndexedMinHeap {
+    private int[] heap;
+    private int[] slot;
+    private double[] key;
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        slot = new int[capacity];
+        key = new double[capacity];
+        Arrays.fill(slot, -1);
+    }
+
+    /** Grows the heap so it can hold nodes 0 .. capacity - 1, by at least half again. */
+    public void ensureCapacity(int capacity) {
+        if (capacity > slot.length) {
+            int previous = slot.length;
+            int grown = Math.max(capacity, previous + (previous >> 1));
+            heap = Arrays.copyOf(heap, grown);
+            slot = Arrays.copyOf(slot, grown);
+            key = Arrays.copyOf(key, grown);
+            Arrays.fill(slot, previous, grown, -1);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int node) {
+        return slot[node] >= 0;
+    }
+
+    /** Inserts node with the given key, or lowers its key if it is already queued with a larger one. */
+    public void offer(int node, double nodeKey) {
+        int position = slot[node];
+        if (position < 0) {
+            position = size++;
+            heap[position] = node;
+            slot[node] = position;
+        } else if (nodeKey >= key[node]) {
+            return;
+        }
+        key[node] = nodeKey;
+        siftUp(position);
+    }
+
+    public double peekKey() {
+        return key[heap[0]];
+    }
+
+    /** Removes and returns the node with the smallest key. */
+    public int poll() {
+        int top = heap[0];
+        slot[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            slot[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            slot[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int node = heap[position];
+        double nodeKey = key[node];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentNode = heap[parent];
+            if (key[parentNode] <= nodeKey) {
+                break;
+            }
+            heap[position] = parentNode;
+            slot[parentNode] = position;
+            position = parent;
+        }
+        heap[position] = node;
+        slot[node] = position;
+    }
+
+    private void siftDown(int position) {
+        int node = heap[position];
+        double nodeKey = key[node];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && key[heap[right]] < key[heap[child]]) {
+                child = right;
+            }
+            if (nodeKey <= key[heap[child]]) {
+                break;
+            }
+            heap[position] = heap[child];
+            slot[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = node;
+        slot[node] = position;
+    }
+}
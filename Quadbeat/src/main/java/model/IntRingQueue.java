@@ -0,0 +1,52 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * FIFO queue of ints in a power-of-two ring buffer. It only grows, so once a thread's
+ * queue has reached the size its traversals need, enqueueing allocates nothing.
+ */
+public class IntRingQueue {
+    private int[] items;
+    private int head;
+    private int tail;
+
+    public IntRingQueue(int capacity) {
+        items = new int[Integer.highestOneBit(Math.max(16, capacity - 1)) << 1];
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int size() {
+        return tail - head;
+    }
+
+    public void add(int value) {
+        if (size() == items.length) {
+            grow();
+        }
+        items[tail++ & (items.length - 1)] = value;
+    }
+
+    public int poll() {
+        return items[head++ & (items.length - 1)];
+    }
+
+    public void clear() {
+        head = 0;
+        tail = 0;
+    }
+
+    private void grow() {
+        int[] grown = new int[items.length * 2];
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            grown[i] = items[(head + i) & (items.length - 1)];
+        }
+        items = grown;
+        head = 0;
+        tail = size;
+    }
+}
@@ -1,5 +1,7 @@
 package model;
 
+import java.util.List;
+
 public class Main {
     public static void main(String[] args) {
         
@@ -8,14 +10,28 @@ public class Main {
 
         GraphBuilder builder = new GraphBuilder();
         builder.loadSongsFromCSV(csvPath);
-        builder.buildSongBasedGraph();
-        builder.buildArtistBasedGraph();
-        builder.buildMoodBasedGraph();
+        builder.buildAllGraphs();
+        builder.printMemoryReport();
 
          
-        builder.recommend(seedSongId, GraphBuilder.GraphType.SONG_BASED, GraphBuilder.AlgoType.BFS);
+        printRecommendations(builder, seedSongId, GraphBuilder.AlgoType.BFS);
         System.out.println();
         // Run Dijkstra (Best Match)
-        builder.recommend(seedSongId, GraphBuilder.GraphType.SONG_BASED, GraphBuilder.AlgoType.DIJKSTRA);
+        printRecommendations(builder, seedSongId, GraphBuilder.AlgoType.DIJKSTRA);
+    }
+
+    private static void printRecommendations(GraphBuilder builder, String seedSongId, GraphBuilder.AlgoType algorithm) {
+        long start = System.currentTimeMillis();
+        List<Recommendation> recommendations = builder.recommend(seedSongId, GraphBuilder.GraphType.SONG_BASED, algorithm);
+        long end = System.currentTimeMillis();
+        System.out.println("Algorithm: " + (algorithm == GraphBuilder.AlgoType.BFS ? "Quick Match (BFS)" : "Best Match (Dijkstra)"));
+        System.out.println("Seed: " + seedSongId);
+        System.out.println("Top " + recommendations.size() + " Recommendations:");
+        int idx = 1;
+        for (Recommendation rec : recommendations) {
+            System.out.println(idx + ". " + builder.getSongTable().getSongId(rec.getSongIndex()) + " (weight: " + rec.getScore() + ")");
+            idx++;
+        }
+        System.out.println("Total time taken: " + (end - start) + " ms");
     }
 } 
\ No newline at end of file
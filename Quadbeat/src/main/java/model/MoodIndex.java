@@ -0,0 +1,188 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The rows of each mood of a SongTable, most popular first. Moods are keyed by their
+ * canonical form (trimmed, lowercased), so "Happy", "happy " and "HAPPY" share a list.
+ * Alongside each list is the running total of its popularities, for weighted picks.
+ *
+ * Rows added to the table after the index was built are picked up by update(), or by
+ * copyFor() when the index may be in use. Lists are replaced rather than changed, so a
+ * copy shares every list but those of the moods the added rows have, which are merged
+ * into new ones. Removed rows stay in the lists and are skipped when picking.
+ */
+public class MoodIndex {
+    private static final int[] NONE = new int[0];
+
+    private final SongTable songs;
+    // Replaced rather than changed, like the lists in it, so copies share it
+    private Map<String, Rows> rowsByMood = new HashMap<>();
+    private int indexedRows;
+
+    public MoodIndex(SongTable songs) {
+        this.songs = songs;
+        update();
+    }
+
+    // A copy of from over songs, sharing its lists
+    private MoodIndex(SongTable songs, MoodIndex from) {
+        this.songs = songs;
+        rowsByMood = from.rowsByMood;
+        indexedRows = from.indexedRows;
+        update();
+    }
+
+    /**
+     * The index of songs, a copy of the table this one indexes with rows added or removed
+     * since, without changing this one. It copies the map of moods and the lists of the
+     * moods the added rows have.
+     */
+    public MoodIndex copyFor(SongTable songs) {
+        return new MoodIndex(songs, this);
+    }
+
+    public static String canonical(String mood) {
+        return mood.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Indexes the rows added to the table since the last update. */
+    public void update() {
+        if (indexedRows == songs.size()) {
+            return;
+        }
+        Map<String, Rows> added = new HashMap<>();
+        for (int row = indexedRows; row < songs.size(); row++) {
+            added.computeIfAbsent(canonical(songs.getMood(row)), key -> new Rows()).add(row);
+        }
+        double[] popularities = songs.getPopularities();
+        Map<String, Rows> updated = new HashMap<>(rowsByMood);
+        added.forEach((mood, rows) -> updated.put(mood, Rows.merge(rowsByMood.get(mood), rows, popularities)));
+        rowsByMood = updated;
+        indexedRows = songs.size();
+    }
+
+    /** The most popular live song with this mood, or -1 if there is none. */
+    public int mostPopular(String mood) {
+        int[] top = top(mood, 1);
+        return top.length == 0 ? -1 : top[0];
+    }
+
+    /** Up to n live songs with this mood, most popular first. */
+    public int[] top(String mood, int n) {
+        Rows rows = rowsByMood.get(canonical(mood));
+        if (rows == null) {
+            return NONE;
+        }
+        int[] top = new int[Math.min(n, rows.size)];
+        int count = 0;
+        for (int k = 0; k < rows.size && count < top.length; k++) {
+            if (!songs.isRemoved(rows.values[k])) {
+                top[count++] = rows.values[k];
+            }
+        }
+        return count == top.length ? top : Arrays.copyOf(top, count);
+    }
+
+    /**
+     * A live song with this mood picked with probability proportional to its popularity,
+     * or -1 if there is none. A pick that lands on a removed song moves to the next live one.
+     */
+    public int weightedRandom(String mood, Random random) {
+        Rows rows = rowsByMood.get(canonical(mood));
+        if (rows == null || rows.size == 0) {
+            return -1;
+        }
+        double total = rows.cumulative[rows.size - 1];
+        int start = 0;
+        if (total > 0) {
+            int position = Arrays.binarySearch(rows.cumulative, 0, rows.size, random.nextDouble() * total);
+            start = Math.min(position >= 0 ? position + 1 : -position - 1, rows.size - 1);
+        } else {
+            start = random.nextInt(rows.size);
+        }
+        for (int k = 0; k < rows.size; k++) {
+            int row = rows.values[(start + k) % rows.size];
+            if (!songs.isRemoved(row)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /** Number of songs ever indexed with this mood, removed ones included. */
+    public int count(String mood) {
+        Rows rows = rowsByMood.get(canonical(mood));
+        return rows == null ? 0 : rows.size;
+    }
+
+    // Rows of one mood, most popular first once merged, with their running totals
+    private static final class Rows {
+        int[] values = new int[4];
+        double[] cumulative = new double[0];
+        int size;
+
+        void add(int row) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = row;
+        }
+
+        // The rows of list, which may be null, and the added ones, in order, as a new list
+        static Rows merge(Rows list, Rows added, double[] popularities) {
+            sort(added.values, added.size, popularities);
+            int[] existing = list == null ? NONE : list.values;
+            int existingSize = list == null ? 0 : list.size;
+            Rows merged = new Rows();
+            merged.values = new int[existingSize + added.size];
+            merge(existing, 0, existingSize, added.values, 0, added.size, merged.values, 0, popularities);
+            merged.size = merged.values.length;
+            merged.cumulative = new double[merged.size];
+            double total = 0;
+            for (int k = 0; k < merged.size; k++) {
+                total += Math.max(0, popularities[merged.values[k]]);
+                merged.cumulative[k] = total;
+            }
+            return merged;
+        }
+
+        // A merge sort, so the rows need no boxing
+        private static void sort(int[] rows, int size, double[] popularities) {
+            int[] from = rows;
+            int[] to = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int start = 0; start < size; start += 2 * width) {
+                    int middle = Math.min(start + width, size);
+                    int end = Math.min(start + 2 * width, size);
+                    merge(from, start, middle, from, middle, end, to, start, popularities);
+                }
+                int[] swap = from;
+                from = to;
+                to = swap;
+            }
+            if (from != rows) {
+                System.arraycopy(from, 0, rows, 0, size);
+            }
+        }
+
+        // Merges a[aFrom, aTo) and b[bFrom, bTo), each in order, into out from position at
+        private static void merge(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out, int at,
+                                  double[] popularities) {
+            while (aFrom < aTo || bFrom < bTo) {
+                out[at++] = bFrom == bTo || aFrom < aTo && ranksBefore(a[aFrom], b[bFrom], popularities)
+                        ? a[aFrom++] : b[bFrom++];
+            }
+        }
+
+        // Most popular first, ties in row order
+        private static boolean ranksBefore(int a, int b, double[] popularities) {
+            int byPopularity = Double.compare(-popularities[a], -popularities[b]);
+            return byPopularity < 0 || byPopularity == 0 && a < b;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package model;
+
+/**
+ * One recommended song: its index in the catalog, its score, and how it was reached
+ * (number of hops from the seed and the index of the song it was reached from, or -1).
+ */
+public class Recommendation {
+    private final int songIndex;
+    private final double score;
+    private final int hops;
+    private final int predecessor;
+
+    public Recommendation(int songIndex, double score, int hops, int predecessor) {
+        this.songIndex = songIndex;
+        this.score = score;
+        this.hops = hops;
+        this.predecessor = predecessor;
+    }
+
+    public int getSongIndex() {
+        return songIndex;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getHops() {
+        return hops;
+    }
+
+    public int getPredecessor() {
+        return predecessor;
+    }
+
+    @Override
+    public String toString() {
+        return "Recommendation{songIndex=" + songIndex + ", score=" + score + ", hops=" + hops
+                + ", predecessor=" + predecessor + '}';
+    }
+}
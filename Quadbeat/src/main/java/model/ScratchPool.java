@@ -0,0 +1,59 @@
+package model;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded set of TraversalScratch spaces shared by every thread that traverses a graph.
+ * Scratch spaces are created on demand up to the capacity; after that a traversal waits
+ * for one to be released. A thread-local per request thread would keep one full-size
+ * space alive for every Tomcat or virtual thread that ever ran a traversal, so ten
+ * thousand virtual threads would pin ten thousand of them. Traversals are CPU-bound, so
+ * a capacity near the core count leaves no core idle.
+ *
+ * The most recently released space is handed out first, while its arrays are still in cache.
+ */
+public class ScratchPool {
+    private final int capacity;
+    private final LinkedBlockingDeque<TraversalScratch> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    public ScratchPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Scratch pool capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /** A scratch space for one traversal, waiting for one to be released if all are in use. */
+    TraversalScratch acquire() {
+        TraversalScratch scratch = idle.pollFirst();
+        if (scratch != null) {
+            return scratch;
+        }
+        for (int count = created.get(); count < capacity; count = created.get()) {
+            if (created.compareAndSet(count, count + 1)) {
+                return new TraversalScratch();
+            }
+        }
+        try {
+            return idle.takeFirst();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a traversal scratch space", e);
+        }
+    }
+
+    void release(TraversalScratch scratch) {
+        idle.offerFirst(scratch);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Scratch spaces created so far; never more than the capacity. */
+    public int getCreated() {
+        return created.get();
+    }
+}
@@ -0,0 +1,401 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Trigram index over the lowercased titles and artist names of a SongTable. Each distinct
+ * trigram maps to the ascending list of rows (for titles) or artist codes (for artists)
+ * containing it, so a substring query only looks at the rows in the intersection of its
+ * trigrams' lists instead of the whole catalog. Matches are then checked against the
+ * text itself, since sharing every trigram does not imply containing the query.
+ *
+ * Texts are indexed with two leading sentinels, so a prefix query is the substring query
+ * for sentinels plus query and needs no second index. Substring queries shorter than a
+ * trigram fall back to a scan, of the rows most popular first, so it stops as soon as
+ * enough of them match. Matches are ranked in a heap of only as many as are asked for.
+ *
+ * Rows added to the table after the index was built are picked up by update(), or by
+ * copyFor() when the index may be in use. Copies share the trigram maps and lists: a list
+ * a new row joins is replaced by one with the row appended, sharing the array, and each
+ * copy only reads the rows it has indexed. So a copy for one more row costs about as
+ * much as indexing that row, plus merging it into a list of at most MAX_RECENT recent
+ * rows. Removed rows stay in the lists and are skipped when searching.
+ */
+public class SearchIndex {
+    private static final char START = '\u0001';
+    private static final int[] NONE = new int[0];
+    // Rows added since byPopularity was last merged are kept aside, up to this many
+    private static final int MAX_RECENT = 4096;
+
+    private final SongTable songs;
+    // Shared with the copies of this index; ids past what this one has indexed are theirs
+    private Map<Long, Postings> titleTrigrams;
+    private Map<Long, Postings> artistTrigrams;
+    // Rows of each artist code
+    private Postings[] artistRows;
+    private int artistCount;
+    // Every row, most popular first, but for the recent ones, which are kept aside in the
+    // same order; both are replaced rather than changed, so copies share them
+    private int[] byPopularity;
+    private int[] recent;
+    private int indexedRows;
+    // Rows written to the shared lists, by whichever copy is the newest
+    private Extent extent;
+
+    public SearchIndex(SongTable songs) {
+        this.songs = songs;
+        reset();
+        update();
+    }
+
+    // A copy of from over songs, sharing everything with it
+    private SearchIndex(SongTable songs, SearchIndex from) {
+        this.songs = songs;
+        titleTrigrams = from.titleTrigrams;
+        artistTrigrams = from.artistTrigrams;
+        artistRows = from.artistRows;
+        artistCount = from.artistCount;
+        byPopularity = from.byPopularity;
+        recent = from.recent;
+        indexedRows = from.indexedRows;
+        extent = from.extent;
+        update();
+    }
+
+    /**
+     * The index of songs, a copy of the table this one indexes with rows added or removed
+     * since, without changing this one. Only the lists the added rows join are replaced;
+     * a copy of an index that another copy has already added to is indexed from scratch.
+     */
+    public SearchIndex copyFor(SongTable songs) {
+        return new SearchIndex(songs, this);
+    }
+
+    private void reset() {
+        titleTrigrams = new ConcurrentHashMap<>();
+        artistTrigrams = new ConcurrentHashMap<>();
+        artistRows = new Postings[16];
+        artistCount = 0;
+        byPopularity = NONE;
+        recent = NONE;
+        indexedRows = 0;
+        extent = new Extent();
+    }
+
+    /** Indexes the rows and artists added to the table since the last update. */
+    public void update() {
+        SongTable.Dictionary artistNames = songs.getArtistNames();
+        if (indexedRows == songs.size() && artistCount == artistNames.size()) {
+            return;
+        }
+        if (indexedRows != extent.rows) {
+            // Another copy has indexed rows past this one, so start over on lists of its own
+            reset();
+        }
+        if (artistNames.size() > artistRows.length) {
+            artistRows = Arrays.copyOf(artistRows, Math.max(artistNames.size(), artistRows.length * 2));
+        }
+        Map<Long, IntList> addedArtistTrigrams = new HashMap<>();
+        for (int code = artistCount; code < artistNames.size(); code++) {
+            artistRows[code] = Postings.EMPTY;
+            addTrigrams(addedArtistTrigrams, artistNames.decode(code), code);
+        }
+        publish(artistTrigrams, addedArtistTrigrams);
+        artistCount = artistNames.size();
+
+        Map<Long, IntList> addedTitleTrigrams = new HashMap<>();
+        int[] artists = songs.getArtistCodes();
+        for (int row = indexedRows; row < songs.size(); row++) {
+            addTrigrams(addedTitleTrigrams, songs.getTitle(row), row);
+            artistRows[artists[row]] = artistRows[artists[row]].with(row);
+        }
+        publish(titleTrigrams, addedTitleTrigrams);
+
+        if (indexedRows < songs.size()) {
+            int[] added = new int[songs.size() - indexedRows];
+            for (int k = 0; k < added.length; k++) {
+                added[k] = indexedRows + k;
+            }
+            double[] popularities = songs.getPopularities();
+            recent = merge(recent, top(added, added.length, added.length, popularities), popularities);
+            if (recent.length > MAX_RECENT) {
+                byPopularity = merge(byPopularity, recent, popularities);
+                recent = NONE;
+            }
+        }
+        indexedRows = songs.size();
+        extent.rows = indexedRows;
+    }
+
+    /**
+     * Rows whose title or artist contains the query (or starts with it, in prefix mode),
+     * ignoring case, most popular first. Rows are offered to accept in that order and the
+     * first limit it accepts are returned; a limit of 0 or less returns every match.
+     */
+    public int[] search(String query, boolean prefix, int limit, IntPredicate accept) {
+        String text = query.toLowerCase();
+        int[] titleMatches;
+        int[] artistMatches;
+        if (prefix && !text.isEmpty()) {
+            String anchored = "" + START + START + text;
+            titleMatches = candidates(titleTrigrams, anchored, indexedRows);
+            artistMatches = candidates(artistTrigrams, anchored, artistCount);
+        } else if (text.length() >= 3) {
+            titleMatches = candidates(titleTrigrams, text, indexedRows);
+            artistMatches = candidates(artistTrigrams, text, artistCount);
+        } else {
+            titleMatches = null;
+            artistMatches = null;
+        }
+
+        // Check the candidate artists against the text
+        SongTable.Dictionary artistNames = songs.getArtistNames();
+        boolean[] artistMatched = new boolean[artistCount];
+        int artistCandidates = artistMatches != null ? artistMatches.length : artistCount;
+        for (int k = 0; k < artistCandidates; k++) {
+            int code = artistMatches != null ? artistMatches[k] : k;
+            artistMatched[code] = matches(artistNames.decode(code), text, prefix);
+        }
+        int[] artists = songs.getArtistCodes();
+        int wanted = limit > 0 ? limit : Integer.MAX_VALUE;
+
+        double[] popularities = songs.getPopularities();
+        if (titleMatches == null) {
+            // Every row is a candidate, and they are already in order, once the recent ones are merged in
+            IntList results = new IntList();
+            for (int i = 0, j = 0; i + j < byPopularity.length + recent.length && results.size < wanted; ) {
+                int row = j == recent.length || i < byPopularity.length && ranksBefore(byPopularity[i], recent[j],
+                        popularities) ? byPopularity[i++] : recent[j++];
+                if (!songs.isRemoved(row) && (artistMatched[artists[row]] || matches(songs.getTitle(row), text, prefix))
+                        && accept.test(row)) {
+                    results.add(row);
+                }
+            }
+            return Arrays.copyOf(results.values, results.size);
+        }
+
+        // Expand matching artists to their songs; a song matching on both is only taken as the artist's
+        IntList rows = new IntList();
+        for (int code : artistMatches) {
+            if (artistMatched[code]) {
+                // Rows are ascending, and those from indexedRows on are a newer copy's
+                Postings artist = artistRows[code];
+                for (int m = 0; m < artist.size && artist.values[m] < indexedRows; m++) {
+                    if (!songs.isRemoved(artist.values[m])) {
+                        rows.add(artist.values[m]);
+                    }
+                }
+            }
+        }
+        for (int row : titleMatches) {
+            if (!artistMatched[artists[row]] && !songs.isRemoved(row) && matches(songs.getTitle(row), text, prefix)) {
+                rows.add(row);
+            }
+        }
+
+        // Only the best wanted rows are ranked; if accept turns too many of them down, twice as
+        // many are, and the ones already offered are skipped
+        int[] results = new int[Math.min(wanted, rows.size)];
+        int accepted = 0;
+        int offered = 0;
+        for (int keep = results.length; ; keep = (int) Math.min(rows.size, 2L * keep)) {
+            int[] best = top(rows.values, rows.size, keep, popularities);
+            for (; offered < best.length && accepted < results.length; offered++) {
+                if (accept.test(best[offered])) {
+                    results[accepted++] = best[offered];
+                }
+            }
+            if (accepted == results.length || keep == rows.size) {
+                return accepted == results.length ? results : Arrays.copyOf(results, accepted);
+            }
+        }
+    }
+
+    // Whether row a ranks before row b: more popular first, ties in row order
+    private static boolean ranksBefore(int a, int b, double[] popularities) {
+        int byPopularity = Double.compare(-popularities[a], -popularities[b]);
+        return byPopularity < 0 || byPopularity == 0 && a < b;
+    }
+
+    /*
+     * The count best of the first size rows, best first. They are kept in a heap with the
+     * worst of them at the root, which each further row only has to beat to get in, and
+     * taken out worst first from the back.
+     */
+    private static int[] top(int[] rows, int size, int count, double[] popularities) {
+        int[] heap = new int[Math.min(count, size)];
+        int heapSize = 0;
+        for (int k = 0; k < size; k++) {
+            int row = rows[k];
+            if (heapSize < heap.length) {
+                heap[heapSize] = row;
+                int child = heapSize++;
+                while (child > 0 && ranksBefore(heap[(child - 1) / 2], heap[child], popularities)) {
+                    swap(heap, child, (child - 1) / 2);
+                    child = (child - 1) / 2;
+                }
+            } else if (heapSize > 0 && ranksBefore(row, heap[0], popularities)) {
+                heap[0] = row;
+                siftDown(heap, heapSize, popularities);
+            }
+        }
+        int[] best = new int[heapSize];
+        for (int k = heapSize - 1; k >= 0; k--) {
+            best[k] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, popularities);
+        }
+        return best;
+    }
+
+    // Moves the root down until no child ranks after it
+    private static void siftDown(int[] heap, int size, double[] popularities) {
+        int parent = 0;
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && ranksBefore(heap[child], heap[child + 1], popularities)) {
+                child++;
+            }
+            if (!ranksBefore(heap[parent], heap[child], popularities)) {
+                return;
+            }
+            swap(heap, parent, child);
+            parent = child;
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    // Two lists of rows that are each best first, as one
+    private static int[] merge(int[] first, int[] second, double[] popularities) {
+        int[] merged = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            merged[k] = j == second.length || i < first.length && ranksBefore(first[i], second[j], popularities)
+                    ? first[i++] : second[j++];
+        }
+        return merged;
+    }
+
+    private static boolean matches(String value, String text, boolean prefix) {
+        String lower = value.toLowerCase();
+        return prefix ? lower.startsWith(text) : lower.contains(text);
+    }
+
+    // Collects the ids to append to each trigram's list of the index
+    private static void addTrigrams(Map<Long, IntList> added, String value, int id) {
+        String text = "" + START + START + value.toLowerCase();
+        for (int k = 0; k + 3 <= text.length(); k++) {
+            IntList ids = added.computeIfAbsent(trigram(text, k), key -> new IntList());
+            // Ids arrive in ascending order, so a repeat of a trigram in this text is the last entry
+            if (ids.size == 0 || ids.values[ids.size - 1] != id) {
+                ids.add(id);
+            }
+        }
+    }
+
+    private static void publish(Map<Long, Postings> index, Map<Long, IntList> added) {
+        added.forEach((trigram, ids) -> index.put(trigram, index.getOrDefault(trigram, Postings.EMPTY).with(ids)));
+    }
+
+    // Ids below bound containing every trigram of text, ascending; empty if some trigram never occurs
+    private static int[] candidates(Map<Long, Postings> index, String text, int bound) {
+        int trigramCount = text.length() - 2;
+        Postings[] lists = new Postings[trigramCount];
+        for (int k = 0; k < trigramCount; k++) {
+            Postings postings = index.get(trigram(text, k));
+            if (postings == null) {
+                return NONE;
+            }
+            lists[k] = postings.below(bound);
+        }
+        Arrays.sort(lists, Comparator.comparingInt((Postings postings) -> postings.size));
+
+        int[] result = Arrays.copyOf(lists[0].values, lists[0].size);
+        int size = result.length;
+        for (int k = 1; k < lists.length && size > 0; k++) {
+            int kept = 0;
+            int from = 0;
+            for (int m = 0; m < size; m++) {
+                int position = Arrays.binarySearch(lists[k].values, from, lists[k].size, result[m]);
+                if (position >= 0) {
+                    result[kept++] = result[m];
+                    from = position + 1;
+                } else {
+                    from = -position - 1;
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long trigram(String text, int k) {
+        return (long) text.charAt(k) << 32 | (long) text.charAt(k + 1) << 16 | text.charAt(k + 2);
+    }
+
+    /*
+     * An ascending list of ids, never changed once published. Appending makes a new list
+     * that shares the array when it has room: the ids before size stay as they were, and
+     * only the newest list of an array is ever appended to.
+     */
+    private static final class Postings {
+        static final Postings EMPTY = new Postings(NONE, 0);
+
+        final int[] values;
+        final int size;
+
+        Postings(int[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        Postings with(int id) {
+            int[] array = size < values.length ? values : Arrays.copyOf(values, Math.max(4, size * 2));
+            array[size] = id;
+            return new Postings(array, size + 1);
+        }
+
+        Postings with(IntList ids) {
+            int length = size + ids.size;
+            int[] array = length <= values.length ? values : Arrays.copyOf(values, Math.max(length, size * 2));
+            System.arraycopy(ids.values, 0, array, size, ids.size);
+            return new Postings(array, length);
+        }
+
+        // The ids below bound
+        Postings below(int bound) {
+            if (size == 0 || values[size - 1] < bound) {
+                return this;
+            }
+            int position = Arrays.binarySearch(values, 0, size, bound);
+            return new Postings(values, position >= 0 ? position : -position - 1);
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static final class Extent {
+        int rows;
+    }
+}
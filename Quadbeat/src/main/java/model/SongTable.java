@@ -0,0 +1,292 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column-oriented song catalog. Songs are addressed by a dense index; the categorical
+ * fields (artist, language, genre, mood) are dictionary-encoded to small int codes, so
+ * comparing two songs is an int comparison, and tempo and popularity live in primitive
+ * arrays. Song objects are only created on request, as views for callers that want one.
+ *
+ * The column getters return the backing arrays, which may be longer than size().
+ * A table that readers may be using is never changed; changes go to a copy() instead.
+ * Copies share the columns, the dictionaries and the id map, which only ever grow: the
+ * newest copy appends past the end of the older ones, which never read beyond their own
+ * size. Removal flags are kept in pages, so a removal copies one page and the page table.
+ */
+public class SongTable {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final Dictionary artistNames;
+    private final Dictionary languageNames;
+    private final Dictionary genreNames;
+    private final Dictionary moodNames;
+    // First row ever added with each id; later rows with the same id follow through nextWithId
+    private Map<String, Integer> firstById;
+    // Rows written to the shared columns, by whichever copy is the newest
+    private Extent extent;
+
+    private String[] songIds;
+    private String[] titles;
+    private int[] artists;
+    private int[] languages;
+    private int[] genres;
+    private int[] moods;
+    private int[] releaseYears;
+    private double[] tempos;
+    private double[] popularities;
+    private int[] nextWithId;
+    // Removed rows keep their index so graph nodes stay aligned with the table
+    private boolean[][] removed;
+    private int size;
+
+    public SongTable() {
+        this(1024);
+    }
+
+    public SongTable(int capacity) {
+        artistNames = new Dictionary();
+        languageNames = new Dictionary();
+        genreNames = new Dictionary();
+        moodNames = new Dictionary();
+        firstById = new ConcurrentHashMap<>();
+        extent = new Extent();
+        songIds = new String[capacity];
+        titles = new String[capacity];
+        artists = new int[capacity];
+        languages = new int[capacity];
+        genres = new int[capacity];
+        moods = new int[capacity];
+        releaseYears = new int[capacity];
+        tempos = new double[capacity];
+        popularities = new double[capacity];
+        nextWithId = new int[capacity];
+        removed = new boolean[0][];
+    }
+
+    public int add(Song song) {
+        return add(song.getSongId(), song.getTitle(), song.getArtist(), song.getLanguage(), song.getGenre(),
+                song.getReleaseYear(), song.getMood(), song.getTempo(), song.getPopularity());
+    }
+
+    // A copy of from, sharing everything with it until one of them changes
+    private SongTable(SongTable from) {
+        artistNames = from.artistNames.copy();
+        languageNames = from.languageNames.copy();
+        genreNames = from.genreNames.copy();
+        moodNames = from.moodNames.copy();
+        firstById = from.firstById;
+        extent = from.extent;
+        songIds = from.songIds;
+        titles = from.titles;
+        artists = from.artists;
+        languages = from.languages;
+        genres = from.genres;
+        moods = from.moods;
+        releaseYears = from.releaseYears;
+        tempos = from.tempos;
+        popularities = from.popularities;
+        nextWithId = from.nextWithId;
+        removed = from.removed;
+        size = from.size;
+    }
+
+    /**
+     * A copy that songs can be added to and removed from without changing this table. It
+     * costs a few object headers; appending to a copy of a table that is not the newest
+     * copies the columns first.
+     */
+    public SongTable copy() {
+        return new SongTable(this);
+    }
+
+    /** Appends a song and returns its index. */
+    public int add(String songId, String title, String artist, String language, String genre,
+                   int releaseYear, String mood, double tempo, double popularity) {
+        if (size != extent.rows || size == songIds.length) {
+            copyColumns(size == songIds.length ? Math.max(16, songIds.length * 2) : songIds.length);
+        }
+        songIds[size] = songId;
+        titles[size] = title;
+        artists[size] = artistNames.encode(artist);
+        languages[size] = languageNames.encode(language);
+        genres[size] = genreNames.encode(genre);
+        moods[size] = moodNames.encode(mood);
+        releaseYears[size] = releaseYear;
+        tempos[size] = tempo;
+        popularities[size] = popularity;
+        nextWithId[size] = -1;
+        Integer first = firstById.putIfAbsent(songId, size);
+        if (first != null) {
+            int last = first;
+            while (nextWithId[last] >= 0) {
+                last = nextWithId[last];
+            }
+            nextWithId[last] = size;
+        }
+        if ((size & (PAGE_SIZE - 1)) == 0 && size >> PAGE_BITS == removed.length) {
+            removed = Arrays.copyOf(removed, removed.length + 1);
+            removed[removed.length - 1] = new boolean[PAGE_SIZE];
+        }
+        extent.rows = ++size;
+        return size - 1;
+    }
+
+    // Moves the columns to arrays of this capacity, and stops sharing the id map with the
+    // other copies if one of them has appended past this one
+    private void copyColumns(int capacity) {
+        songIds = Arrays.copyOf(songIds, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        artists = Arrays.copyOf(artists, capacity);
+        languages = Arrays.copyOf(languages, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        moods = Arrays.copyOf(moods, capacity);
+        releaseYears = Arrays.copyOf(releaseYears, capacity);
+        tempos = Arrays.copyOf(tempos, capacity);
+        popularities = Arrays.copyOf(popularities, capacity);
+        nextWithId = Arrays.copyOf(nextWithId, capacity);
+        if (size != extent.rows) {
+            Map<String, Integer> mine = new ConcurrentHashMap<>();
+            for (int i = 0; i < size; i++) {
+                mine.putIfAbsent(songIds[i], i);
+                if (nextWithId[i] >= size) {
+                    nextWithId[i] = -1;
+                }
+            }
+            firstById = mine;
+            extent = new Extent();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Marks the row as removed. Its id then resolves to the next live row with the same
+     * id, if there is one.
+     */
+    public void remove(int index) {
+        if (isRemoved(index)) {
+            return;
+        }
+        boolean[] page = removed[index >> PAGE_BITS].clone();
+        page[index & (PAGE_SIZE - 1)] = true;
+        removed = removed.clone();
+        removed[index >> PAGE_BITS] = page;
+    }
+
+    public boolean isRemoved(int index) {
+        return removed[index >> PAGE_BITS][index & (PAGE_SIZE - 1)];
+    }
+
+    /** Returns the index of the first live song with this id, or -1 if there is none. */
+    public int indexOf(String songId) {
+        Integer first = firstById.get(songId);
+        int index = first == null ? -1 : first;
+        while (index >= 0 && index < size && isRemoved(index)) {
+            index = nextWithId[index];
+        }
+        return index < size ? index : -1;
+    }
+
+    /** Builds a Song view of the row at index. */
+    public Song getSong(int index) {
+        return new Song(songIds[index], titles[index], getArtist(index), getLanguage(index), getGenre(index),
+                releaseYears[index], getMood(index), tempos[index], popularities[index]);
+    }
+
+    public String getSongId(int index) { return songIds[index]; }
+    public String getTitle(int index) { return titles[index]; }
+    public String getArtist(int index) { return artistNames.decode(artists[index]); }
+    public String getLanguage(int index) { return languageNames.decode(languages[index]); }
+    public String getGenre(int index) { return genreNames.decode(genres[index]); }
+    public String getMood(int index) { return moodNames.decode(moods[index]); }
+    public int getReleaseYear(int index) { return releaseYears[index]; }
+    public double getTempo(int index) { return tempos[index]; }
+    public double getPopularity(int index) { return popularities[index]; }
+
+    // Columns, for kernels that scan the whole table
+    public String[] getTitles() { return titles; }
+    public int[] getArtistCodes() { return artists; }
+    public int[] getLanguageCodes() { return languages; }
+    public int[] getGenreCodes() { return genres; }
+    public int[] getMoodCodes() { return moods; }
+    public int[] getReleaseYears() { return releaseYears; }
+    public double[] getTempos() { return tempos; }
+    public double[] getPopularities() { return popularities; }
+
+    public Dictionary getArtistNames() { return artistNames; }
+    public Dictionary getLanguageNames() { return languageNames; }
+    public Dictionary getGenreNames() { return genreNames; }
+    public Dictionary getMoodNames() { return moodNames; }
+
+    // How far the shared arrays have been written, by whichever copy is the newest
+    private static final class Extent {
+        int rows;
+    }
+
+    /**
+     * Assigns each distinct string a code, in order of first appearance. Copies share
+     * their values the way tables share columns.
+     */
+    public static class Dictionary {
+        private Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private String[] values = new String[16];
+        private Extent extent = new Extent();
+        private int size;
+
+        public int encode(String value) {
+            Integer code = codes.get(value);
+            if (code != null && code < size) {
+                return code;
+            }
+            if (size != extent.rows) {
+                // Another copy has encoded values past this one, so stop sharing with it
+                Map<String, Integer> mine = new ConcurrentHashMap<>();
+                for (int k = 0; k < size; k++) {
+                    mine.put(values[k], k);
+                }
+                codes = mine;
+                values = values.clone();
+                extent = new Extent();
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            codes.put(value, size);
+            extent.rows = ++size;
+            return size - 1;
+        }
+
+        /** Returns the code for value, or -1 if it has never been encoded. */
+        public int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code != null && code < size ? code : -1;
+        }
+
+        public String decode(int code) {
+            if (code >= size) {
+                throw new IndexOutOfBoundsException("No code " + code + " among " + size);
+            }
+            return values[code];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        Dictionary copy() {
+            Dictionary copy = new Dictionary();
+            copy.codes = codes;
+            copy.values = values;
+            copy.extent = extent;
+            copy.size = size;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package model;
+
+/**
+ * Told about every traversal GraphBuilder.recommend runs, on the thread that ran it,
+ * so callers can record metrics without wrapping each call.
+ */
+public interface TraversalListener {
+    /**
+     * @param expanded nodes taken off the queue or heap and had their edges scanned
+     * @param offered  songs offered to the accept filter
+     * @param accepted songs the filter accepted, i.e. the recommendations returned
+     */
+    void onTraversal(GraphBuilder.GraphType type, GraphBuilder.AlgoType algorithm, int expanded, int offered,
+                     int accepted, long nanos);
+}
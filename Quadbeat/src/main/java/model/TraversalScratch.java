@@ -0,0 +1,113 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Working memory for one graph traversal at a time, sized for the catalog and handed
+ * out by a ScratchPool, so it is reused from one request to the next. A node's
+ * distance, hop count and predecessor are only meaningful once it has been reached in
+ * the current traversal, which is tracked by stamping it with the traversal's
+ * generation rather than clearing the arrays.
+ *
+ * Playlist traversals also keep, per node, a bit for each seed that has reached it, the
+ * node's combined score and its hops from the nearest seed. These span several searches,
+ * so instead of being stamped they are cleared again for the nodes touched when the
+ * traversal ends. They are only allocated by the first playlist traversal, so
+ * single-seed traffic does not pay for them.
+ */
+public class TraversalScratch {
+    double[] distance = new double[0];
+    int[] hops = new int[0];
+    int[] predecessor = new int[0];
+    private int[] stamp = new int[0];
+    private int generation;
+    final IndexedMinHeap heap = new IndexedMinHeap(0);
+    final IntRingQueue queue = new IntRingQueue(16);
+    // Playlist traversals: seeds that reached each node, BFS frontiers by level parity,
+    // combined scores, hops from the nearest seed, and the nodes touched so far
+    long[] seedMask = new long[0];
+    long[] frontier = new long[0];
+    long[] nextFrontier = new long[0];
+    double[] score = new double[0];
+    int[] playlistHops = new int[0];
+    int[] touched = new int[0];
+    int touchedCount;
+    // Counts for the traversal listener
+    int expanded;
+    int offered;
+
+    /**
+     * Starts a traversal over a graph with nodeCount nodes; every node starts unreached.
+     * Arrays grow by half again when too small, so a catalog growing a song at a time
+     * does not reallocate them for every traversal after each insert.
+     */
+    void begin(int nodeCount) {
+        if (stamp.length < nodeCount) {
+            int capacity = Math.max(nodeCount, stamp.length + (stamp.length >> 1));
+            distance = new double[capacity];
+            hops = new int[capacity];
+            predecessor = new int[capacity];
+            stamp = new int[capacity];
+            generation = 0;
+            heap.ensureCapacity(capacity);
+        }
+        expanded = 0;
+        offered = 0;
+        restart();
+    }
+
+    /** Starts another search within the same traversal; every node is unreached again. */
+    void restart() {
+        heap.clear();
+        queue.clear();
+        if (++generation == 0) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+    }
+
+    /** Starts a playlist traversal; no node has been touched. */
+    void beginPlaylist(int nodeCount) {
+        begin(nodeCount);
+        if (seedMask.length < nodeCount) {
+            int capacity = Math.max(nodeCount, seedMask.length + (seedMask.length >> 1));
+            seedMask = new long[capacity];
+            frontier = new long[capacity];
+            nextFrontier = new long[capacity];
+            score = new double[capacity];
+            playlistHops = new int[capacity];
+            touched = new int[capacity];
+        }
+        touchedCount = 0;
+    }
+
+    /** Notes that a node was reached at nodeHops from a seed; call before setting its seed bits. */
+    void touch(int node, int nodeHops) {
+        if (seedMask[node] == 0) {
+            touched[touchedCount++] = node;
+            playlistHops[node] = nodeHops;
+        } else if (nodeHops < playlistHops[node]) {
+            playlistHops[node] = nodeHops;
+        }
+    }
+
+    /** Clears the per-node playlist state of every touched node. */
+    void endPlaylist() {
+        for (int k = 0; k < touchedCount; k++) {
+            int node = touched[k];
+            seedMask[node] = 0;
+            frontier[node] = 0;
+            nextFrontier[node] = 0;
+            score[node] = 0;
+        }
+        touchedCount = 0;
+    }
+
+    boolean reached(int node) {
+        return stamp[node] == generation;
+    }
+
+    void reach(int node) {
+        stamp[node] = generation;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.Quadbeat;
+
+import Quadbeat.QuadbeatApplication;
+import model.Song;
+import model.SyntheticCatalog;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop comparison of request execution on Tomcat's platform thread pool and on
+ * virtual threads, with thousands of connections open at once. For each mode a node is
+ * started in its own JVM on a generated catalog, so the client's sockets and the
+ * server's do not share one file descriptor limit. Then --connections clients, each a
+ * virtual thread with its own keep-alive connection, send the RequestMix back to back
+ * (after --think-ms) until the time is up.
+ *
+ * Clients connect over the warmup, and only requests started after it are recorded. Each
+ * mode prints throughput, latency percentiles and errors, and writes one HdrHistogram
+ * distribution (.hgrm, in milliseconds) per kind of request under the output directory,
+ * followed by the node's peak thread count and how many traversal scratch spaces it
+ * allocated. The client needs a descriptor per connection, so raise ulimit -n first.
+ *
+ * Run with: mvn -Ploadtest verify -Dloadtest.main=com.example.Quadbeat.ConcurrencyBenchmark -Dloadtest.args="--connections=10000"
+ * Options (defaults in brackets):
+ *   --songs=N [10000]  --connections=n [10000]  --modes=platform,virtual [platform,virtual]
+ *   --duration=s [30]  --warmup=s [20]  --think-ms=ms [0]  --search-share=f [0.2]  --seed=n [42]
+ *   --cache=off|lazy|eager [lazy]  --heap=size [2g]  --out=dir [target/concurrency/&lt;timestamp&gt;]
+ */
+public class ConcurrencyBenchmark {
+    private static final long HIGHEST_LATENCY_NANOS = Duration.ofMinutes(1).toNanos();
+    private static final Pattern METRIC_VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.Ee+-]+)");
+
+    private final Map<String, String> options;
+
+    ConcurrencyBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /** Latencies and failures of one kind of request during one mode's run. */
+    static final class KindStats {
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_LATENCY_NANOS, 3);
+        final AtomicLong errors = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "songs", "10000", "connections", "10000", "modes", "platform,virtual", "duration", "30",
+                "warmup", "20", "think-ms", "0", "search-share", "0.2", "seed", "42", "cache", "lazy", "heap", "2g"));
+        options.put("out", "target/concurrency/" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new ConcurrencyBenchmark(options).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        long seed = Long.parseLong(options.get("seed"));
+        List<Song> songs = SyntheticCatalog.generate(Integer.parseInt(options.get("songs")), seed);
+        Path dataset = Files.createTempFile("quadbeat-concurrency-", ".csv");
+        dataset.toFile().deleteOnExit();
+        SyntheticCatalog.writeCsv(songs, dataset);
+        Path out = Path.of(options.get("out"));
+        Files.createDirectories(out);
+
+        Map<String, Map<String, KindStats>> results = new LinkedHashMap<>();
+        Map<String, Double> seconds = new HashMap<>();
+        for (String mode : options.get("modes").split(",")) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            Process node = start(mode, dataset, port, out.resolve(mode + "-node.log"));
+            try {
+                URI base = URI.create("http://localhost:" + port);
+                awaitReady(base, node);
+                System.out.printf("%n%s threads: node ready with %d songs, %s connections%n", mode, songs.size(),
+                        options.get("connections"));
+                RequestMix mix = new RequestMix(base, songs, Double.parseDouble(options.get("search-share")), seed);
+                long start = System.nanoTime();
+                Map<String, KindStats> stats = runMode(mix);
+                seconds.put(mode, (System.nanoTime() - start) / 1e9 - Long.parseLong(options.get("warmup")));
+                results.put(mode, stats);
+                report(out.resolve(mode), mode, seconds.get(mode), stats);
+                System.out.printf("node: peak threads %.0f, scratch spaces %.0f of %.0f%n",
+                        metric(base, "jvm.threads.peak"), metric(base, "quadbeat.traversal.scratch.created"),
+                        metric(base, "quadbeat.traversal.scratch.capacity"));
+            } finally {
+                node.destroy();
+                node.waitFor();
+            }
+        }
+
+        System.out.printf("%n%-10s %10s %8s %8s %8s %8s %8s%n", "mode", "req/s", "errors", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms");
+        for (Map.Entry<String, Map<String, KindStats>> entry : results.entrySet()) {
+            Histogram all = new Histogram(HIGHEST_LATENCY_NANOS, 3);
+            long errors = 0;
+            for (KindStats stats : entry.getValue().values()) {
+                all.add(stats.latency);
+                errors += stats.errors.get();
+            }
+            System.out.printf("%-10s %10.1f %8d %8.2f %8.2f %8.2f %8.2f%n", entry.getKey(),
+                    all.getTotalCount() / seconds.get(entry.getKey()), errors, millis(all.getValueAtPercentile(50)),
+                    millis(all.getValueAtPercentile(99)), millis(all.getValueAtPercentile(99.9)),
+                    millis(all.getMaxValue()));
+        }
+        System.out.printf("Reports in %s%n", out.toAbsolutePath());
+    }
+
+    // A node in its own JVM, on the test classpath, with request threads of the given kind
+    private Process start(String mode, Path dataset, int port, Path log) throws IOException {
+        if (!mode.equals("platform") && !mode.equals("virtual")) {
+            throw new IllegalArgumentException("Unknown mode " + mode + ", expected platform or virtual");
+        }
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + options.get("heap"),
+                // devtools is on the test classpath, and its restart would boot the node twice
+                "-Dspring.devtools.restart.enabled=false",
+                "-cp", System.getProperty("java.class.path"),
+                QuadbeatApplication.class.getName(),
+                "--server.port=" + port,
+                "--quadbeat.dataset.path=" + dataset,
+                "--quadbeat.snapshot.path=",
+                "--quadbeat.dataset.watch=false",
+                "--quadbeat.cache.mode=" + options.get("cache"),
+                "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                "--server.tomcat.max-connections=" + (Integer.parseInt(options.get("connections")) + 1000),
+                // Tomcat closes a connection after 100 requests by default; every client keeps its own
+                "--server.tomcat.max-keep-alive-requests=-1",
+                "--server.tomcat.keep-alive-timeout=120s",
+                "--logging.level.Quadbeat=warn",
+                "--logging.level.model=warn"));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    private void awaitReady(URI base, Process node) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest ready = HttpRequest.newBuilder(base.resolve("/ready")).GET().build();
+        long deadline = System.nanoTime() + Duration.ofMinutes(30).toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!node.isAlive()) {
+                throw new IllegalStateException("Node exited with status " + node.exitValue() + ", see its log");
+            }
+            try {
+                if (client.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Graphs were not ready after 30 minutes");
+    }
+
+    /**
+     * Starts the clients evenly over the warmup and lets them run for the duration. A
+     * client whose request fails counts an error and carries on, reconnecting if need be.
+     */
+    private Map<String, KindStats> runMode(RequestMix mix) throws InterruptedException {
+        Map<String, KindStats> stats = new LinkedHashMap<>();
+        stats.put("recommend", new KindStats());
+        stats.put("search", new KindStats());
+        int connections = Integer.parseInt(options.get("connections"));
+        long thinkMillis = Long.parseLong(options.get("think-ms"));
+        long warmupNanos = Duration.ofSeconds(Long.parseLong(options.get("warmup"))).toNanos();
+        long start = System.nanoTime();
+        long recordFrom = start + warmupNanos;
+        long end = recordFrom + Duration.ofSeconds(Long.parseLong(options.get("duration"))).toNanos();
+        // HTTP/1.1 gives each client in the middle of a request a connection of its own
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+        List<Thread> clients = new ArrayList<>(connections);
+        for (int k = 0; k < connections; k++) {
+            long startAt = start + warmupNanos * k / connections;
+            clients.add(Thread.ofVirtual().name("client-" + k).start(() -> {
+                try {
+                    Thread.sleep(Duration.ofNanos(Math.max(0, startAt - System.nanoTime())));
+                    while (System.nanoTime() < end) {
+                        RequestMix.Request request = mix.next();
+                        KindStats kind = stats.get(request.requestClass().startsWith("search") ? "search" : "recommend");
+                        long sent = System.nanoTime();
+                        boolean failed;
+                        try {
+                            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(request.uri())
+                                    .timeout(Duration.ofSeconds(60)).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+                            failed = response.statusCode() != 200;
+                        } catch (IOException e) {
+                            failed = true;
+                        }
+                        if (sent >= recordFrom) {
+                            kind.latency.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_LATENCY_NANOS));
+                            if (failed) {
+                                kind.errors.incrementAndGet();
+                            }
+                        }
+                        if (thinkMillis > 0) {
+                            Thread.sleep(thinkMillis);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        client.close();
+        return stats;
+    }
+
+    private void report(Path directory, String mode, double seconds, Map<String, KindStats> stats) throws IOException {
+        Files.createDirectories(directory);
+        System.out.printf("%-10s %8s %10s %6s %8s %8s %8s %8s%n", "kind", "count", "req/s", "errors", "p50 ms",
+                "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, KindStats> entry : stats.entrySet()) {
+            Histogram latency = entry.getValue().latency;
+            System.out.printf("%-10s %8d %10.1f %6d %8.2f %8.2f %8.2f %8.2f%n", entry.getKey(), latency.getTotalCount(),
+                    latency.getTotalCount() / seconds, entry.getValue().errors.get(),
+                    millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                    millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                latency.outputPercentileDistribution(hgrm, 1_000_000.0);
+            }
+        }
+    }
+
+    // One gauge from /actuator/metrics, or NaN if the node does not publish it
+    private static double metric(URI base, String name) throws InterruptedException {
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(base.resolve("/actuator/metrics/" + name)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Matcher value = METRIC_VALUE.matcher(response.body());
+            return response.statusCode() == 200 && value.find() ? Double.parseDouble(value.group(1)) : Double.NaN;
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.Quadbeat;
+
+import Quadbeat.QuadbeatApplication;
+import Quadbeat.RecommendationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = QuadbeatApplication.class, properties = "quadbeat.dataset.watch=false")
+@AutoConfigureMockMvc
+class DatasetVersionHeaderTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RecommendationService service;
+
+    @Test
+    void responsesCarryTheVersionOfTheCatalogThatAnsweredThem() throws Exception {
+        mvc.perform(get("/search").param("query", "love"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Dataset-Version", String.valueOf(service.getDatasetVersion())));
+
+        // Reported after the reload publishes, so it names the new version
+        long before = service.getDatasetVersion();
+        mvc.perform(post("/reload").param("force", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Dataset-Version", String.valueOf(before + 1)));
+
+        mvc.perform(delete("/songs/S002"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("X-Dataset-Version", String.valueOf(before + 1)));
+    }
+
+    @Test
+    void requestsThatReadNoCatalogCarryNoVersion() throws Exception {
+        mvc.perform(get("/recommend").param("songId", "S001").param("graphType", "SONG_BASED")
+                        .param("algorithm", "BFS").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("X-Dataset-Version"));
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.Quadbeat;
+
+import Quadbeat.QuadbeatApplication;
+import model.GraphBuilder;
+import model.Song;
+import model.SyntheticCatalog;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load test of one node. Boots QuadbeatApplication on localhost with a
+ * generated catalog (or targets a running node with --url), waits for /ready, then sends
+ * the RequestMix at each of a series of fixed rates. Requests go out on schedule whether
+ * or not earlier ones have answered, and latency is measured from the scheduled time, so
+ * a stalled server shows up as latency rather than as a lower request rate.
+ *
+ * Each rate writes one HdrHistogram percentile distribution (.hgrm, in milliseconds) per
+ * request class under the output directory, plus a line per class to summary.csv. Pass
+ * a previous run's directory as --baseline to print how p99 moved. The run ends with the
+ * highest rate at which every class kept p99 under --slo-ms with no errors.
+ *
+ * A booted node shares the JVM and the cores with the load generator, which is fine for
+ * comparing runs on one machine; for the release number, start the node on its own
+ * machine and point --url at it. Graph builds grow with the square of the catalog, so
+ * catalogs much past 20,000 songs take minutes to become ready.
+ *
+ * Run with: mvn -Ploadtest verify -Dloadtest.args="--songs=10000 --rates=100,200,400 --duration=30"
+ * Options (defaults in brackets):
+ *   --songs=N [10000]        generated catalog size; or --dataset=path for an existing CSV
+ *   --url=http://host:port   load a running node instead of booting one; it must serve the same catalog
+ *   --cache=off|lazy|eager [lazy]
+ *   --rates=r1,r2,... [50,100,200,400]   requests per second, one step each
+ *   --duration=s [30]  --warmup=s [10]  --arrivals=poisson|uniform [poisson]
+ *   --search-share=f [0.2]  --slo-ms=ms [50]  --max-in-flight=n [2000]  --seed=n [42]
+ *   --out=dir [target/loadtest/&lt;timestamp&gt;]  --baseline=dir
+ */
+public class LoadTestHarness {
+    private static final long HIGHEST_LATENCY_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private final Map<String, String> options;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxInFlight;
+    private final long seed;
+
+    LoadTestHarness(Map<String, String> options) {
+        this.options = options;
+        this.maxInFlight = Integer.parseInt(options.get("max-in-flight"));
+        this.seed = Long.parseLong(options.get("seed"));
+    }
+
+    /** Latencies and failures of one request class during one step. */
+    static final class ClassStats {
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_LATENCY_NANOS, 3);
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "songs", "10000", "cache", "lazy", "rates", "50,100,200,400", "duration", "30", "warmup", "10",
+                "arrivals", "poisson", "search-share", "0.2", "slo-ms", "50", "max-in-flight", "2000", "seed", "42"));
+        options.put("out", "target/loadtest/" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTestHarness(options).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        List<Song> songs;
+        Path dataset;
+        if (options.containsKey("dataset")) {
+            dataset = Path.of(options.get("dataset"));
+            GraphBuilder builder = new GraphBuilder();
+            builder.loadSongsFromCSV(dataset.toString());
+            songs = builder.getSongs();
+        } else {
+            songs = SyntheticCatalog.generate(Integer.parseInt(options.get("songs")), seed);
+            dataset = Files.createTempFile("quadbeat-loadtest-", ".csv");
+            dataset.toFile().deleteOnExit();
+            SyntheticCatalog.writeCsv(songs, dataset);
+        }
+
+        ConfigurableApplicationContext context = null;
+        URI base;
+        if (options.containsKey("url")) {
+            base = URI.create(options.get("url"));
+        } else {
+            long start = System.nanoTime();
+            context = boot(dataset);
+            base = URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort());
+            awaitReady(base);
+            System.out.printf("Booted with %d songs, ready after %d ms%n", songs.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+
+        Path out = Path.of(options.get("out"));
+        Files.createDirectories(out);
+        RequestMix mix = new RequestMix(base, songs, Double.parseDouble(options.get("search-share")), seed);
+        double[] rates = parseRates(options.get("rates"));
+        double sloMillis = Double.parseDouble(options.get("slo-ms"));
+        Map<String, Double> baseline = readBaseline();
+
+        System.out.printf("Warming up at %.0f req/s for %s s%n", rates[0], options.get("warmup"));
+        runStep(mix, rates[0], Duration.ofSeconds(Long.parseLong(options.get("warmup"))));
+
+        double sustained = 0;
+        try (PrintWriter summary = new PrintWriter(Files.newBufferedWriter(out.resolve("summary.csv")))) {
+            summary.println("rate,class,count,errors,dropped,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms");
+            for (double rate : rates) {
+                Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+                long start = System.nanoTime();
+                Map<String, ClassStats> stats = runStep(mix, rate, duration);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                boolean withinSlo = report(out, rate, seconds, stats, summary, baseline, sloMillis);
+                summary.flush();
+                if (withinSlo) {
+                    sustained = rate;
+                }
+            }
+        }
+        System.out.printf("%nHighest rate with p99 < %.0f ms and no errors: %s%nReports in %s%n", sloMillis,
+                sustained == 0 ? "none" : String.format("%.0f req/s", sustained), out.toAbsolutePath());
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    private ConfigurableApplicationContext boot(Path dataset) {
+        // devtools is on the test classpath, and its restart would rerun main() with the Spring arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        SpringApplication application = new SpringApplication(QuadbeatApplication.class);
+        // Command-line properties, so they win over application.properties
+        return application.run(
+                "--server.port=" + options.getOrDefault("port", "0"),
+                "--quadbeat.dataset.path=" + dataset,
+                "--quadbeat.snapshot.path=",
+                "--quadbeat.dataset.watch=false",
+                "--quadbeat.cache.mode=" + options.get("cache"),
+                "--logging.level.Quadbeat=warn",
+                "--logging.level.model=warn");
+    }
+
+    private void awaitReady(URI base) throws InterruptedException {
+        HttpRequest ready = HttpRequest.newBuilder(base.resolve("/ready")).GET().build();
+        long deadline = System.nanoTime() + Duration.ofMinutes(30).toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Graphs were not ready after 30 minutes");
+    }
+
+    /**
+     * Sends requests at the given rate for the given time, then waits for the stragglers.
+     * Requests that would take the number outstanding past --max-in-flight are not sent
+     * and count as dropped.
+     */
+    private Map<String, ClassStats> runStep(RequestMix mix, double rate, Duration duration) throws InterruptedException {
+        Map<String, ClassStats> stats = new LinkedHashMap<>();
+        for (String requestClass : RequestMix.RECOMMEND_CLASSES) {
+            stats.put(requestClass, new ClassStats());
+        }
+        for (String requestClass : RequestMix.SEARCH_CLASSES) {
+            stats.put(requestClass, new ClassStats());
+        }
+        boolean poisson = options.get("arrivals").equals("poisson");
+        Random arrivals = new Random(seed ^ Double.doubleToLongBits(rate));
+        double meanGapNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double offset = 0;
+        while (start + (long) offset < end) {
+            long intended = start + (long) offset;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            RequestMix.Request request = mix.next();
+            ClassStats classStats = stats.get(request.requestClass());
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                classStats.dropped.incrementAndGet();
+            } else {
+                HttpRequest httpRequest = HttpRequest.newBuilder(request.uri()).timeout(Duration.ofSeconds(30)).GET().build();
+                client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+                    long latency = System.nanoTime() - intended;
+                    classStats.latency.recordValue(Math.min(latency, HIGHEST_LATENCY_NANOS));
+                    if (error != null || response.statusCode() != 200) {
+                        classStats.errors.incrementAndGet();
+                    }
+                    inFlight.decrementAndGet();
+                });
+            }
+            offset += poisson ? -Math.log(1 - arrivals.nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+        long drainDeadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        return stats;
+    }
+
+    // Prints and writes one step; true if every class met the SLO without errors or drops
+    private boolean report(Path out, double rate, double seconds, Map<String, ClassStats> stats, PrintWriter summary,
+                           Map<String, Double> baseline, double sloMillis) throws IOException {
+        Path stepDirectory = out.resolve(String.format(Locale.ROOT, "rate-%.0f", rate));
+        Files.createDirectories(stepDirectory);
+        long total = stats.values().stream().mapToLong(s -> s.latency.getTotalCount()).sum();
+        System.out.printf("%n%.0f req/s target, %.1f req/s achieved%n", rate, total / seconds);
+        System.out.printf("%-34s %8s %6s %8s %8s %8s %8s %9s%n", "class", "count", "errors", "p50 ms", "p90 ms",
+                "p99 ms", "p99.9 ms", "p99 delta");
+        boolean withinSlo = true;
+        for (Map.Entry<String, ClassStats> entry : stats.entrySet()) {
+            String requestClass = entry.getKey();
+            Histogram latency = entry.getValue().latency;
+            long errors = entry.getValue().errors.get();
+            long dropped = entry.getValue().dropped.get();
+            double p99 = millis(latency.getValueAtPercentile(99));
+            String key = String.format(Locale.ROOT, "%.0f,%s", rate, requestClass);
+            Double previous = baseline.get(key);
+            String delta = previous == null || latency.getTotalCount() == 0 ? ""
+                    : String.format("%+.0f%%", (p99 - previous) / previous * 100);
+            System.out.printf("%-34s %8d %6d %8.2f %8.2f %8.2f %8.2f %9s%n", requestClass, latency.getTotalCount(),
+                    errors + dropped, millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                    p99, millis(latency.getValueAtPercentile(99.9)), delta);
+            summary.printf(Locale.ROOT, "%s,%d,%d,%d,%.2f,%.3f,%.3f,%.3f,%.3f,%.3f%n", key, latency.getTotalCount(),
+                    errors, dropped, latency.getTotalCount() / seconds, millis(latency.getValueAtPercentile(50)),
+                    millis(latency.getValueAtPercentile(90)), p99, millis(latency.getValueAtPercentile(99.9)),
+                    millis(latency.getMaxValue()));
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(
+                    stepDirectory.resolve(requestClass.replace(' ', '_') + ".hgrm")))) {
+                latency.outputPercentileDistribution(hgrm, 1_000_000.0);
+            }
+            withinSlo &= errors == 0 && dropped == 0 && (latency.getTotalCount() == 0 || p99 < sloMillis);
+        }
+        return withinSlo;
+    }
+
+    // p99 by "rate,class" from a previous run's summary.csv
+    private Map<String, Double> readBaseline() throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        if (!options.containsKey("baseline")) {
+            return baseline;
+        }
+        List<String> lines = Files.readAllLines(Path.of(options.get("baseline"), "summary.csv"));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            baseline.put(fields[0] + "," + fields[1], Double.parseDouble(fields[8]));
+        }
+        return baseline;
+    }
+
+    private static double[] parseRates(String rates) {
+        List<Double> values = new ArrayList<>();
+        for (String rate : rates.split(",")) {
+            values.add(Double.parseDouble(rate.trim()));
+        }
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
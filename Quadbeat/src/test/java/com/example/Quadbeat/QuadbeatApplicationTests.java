@@ -1,9 +1,10 @@
 package com.example.Quadbeat;
 
+import Quadbeat.QuadbeatApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(classes = QuadbeatApplication.class)
 class QuadbeatApplicationTests {
 
 	@Test
@@ -0,0 +1,91 @@
+package com.example.Quadbeat;
+
+import Quadbeat.AlgoType;
+import Quadbeat.BatchRecommendationRequest;
+import Quadbeat.BatchRecommendationResult;
+import Quadbeat.GraphType;
+import Quadbeat.MoodSeedPolicy;
+import Quadbeat.RecommendationCache;
+import Quadbeat.RecommendationDto;
+import Quadbeat.RecommendationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationBatchTest {
+
+    @Test
+    void batchAnswersEveryEntryLikeASingleRequestInEntryOrder() {
+        RecommendationService service = new RecommendationService("../Dataset/songs_dataset.csv", "", false, 500,
+                0.73, Integer.MAX_VALUE, RecommendationCache.Mode.OFF, 0, 10, Set.of(), 60_000, MoodSeedPolicy.MOST_POPULAR,
+                3, 3, 100, 0, 0.8, 2000, 0, 16, 100, 64, new SimpleMeterRegistry());
+        try {
+            List<BatchRecommendationRequest.Entry> entries = new ArrayList<>();
+            for (String seed : new String[] {"S003", "S120", "S512", "S003", "S9999"}) {
+                for (GraphType graphType : new GraphType[] {GraphType.SONG_BASED, GraphType.ARTIST_BASED}) {
+                    for (AlgoType algoType : AlgoType.values()) {
+                        entries.add(new BatchRecommendationRequest.Entry(seed, graphType, algoType));
+                    }
+                }
+            }
+            entries.add(new BatchRecommendationRequest.Entry("Energetic", GraphType.MOOD_BASED, AlgoType.DIJKSTRA));
+            BatchRecommendationRequest.Entry five = new BatchRecommendationRequest.Entry("S120", GraphType.SONG_BASED,
+                    AlgoType.BFS);
+            five.setLimit(5);
+            entries.add(five);
+            entries.add(new BatchRecommendationRequest.Entry("no such mood", GraphType.MOOD_BASED, AlgoType.BFS));
+            Collections.shuffle(entries, new Random(1));
+
+            List<BatchRecommendationResult> results = service.recommendBatch(entries, 8);
+
+            assertEquals(entries.size(), results.size());
+            for (int i = 0; i < entries.size(); i++) {
+                BatchRecommendationRequest.Entry entry = entries.get(i);
+                BatchRecommendationResult result = results.get(i);
+                assertEquals(entry.getSongId(), result.getSongId());
+                assertEquals(entry.getGraphType(), result.getGraphType());
+                assertEquals(entry.getAlgorithm(), result.getAlgorithm());
+                if (entry.getSongId().equals("no such mood")) {
+                    assertNull(result.getRecommendations());
+                    assertTrue(result.getError().contains("no such mood"));
+                    continue;
+                }
+                int limit = entry.getLimit() == null ? 8 : entry.getLimit();
+                assertEquals(ids(service.recommend(entry.getSongId(), entry.getGraphType(), entry.getAlgorithm(), limit)),
+                        ids(result.getRecommendations()), entry.getSongId() + " " + entry.getGraphType());
+                assertNull(result.getError());
+            }
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void rejectsOversizedBatchesAndIncompleteEntries() {
+        RecommendationService service = new RecommendationService("../Dataset/songs_dataset.csv", "", false, 500,
+                0.73, Integer.MAX_VALUE, RecommendationCache.Mode.OFF, 0, 10, Set.of(), 60_000, MoodSeedPolicy.MOST_POPULAR,
+                3, 1, 2, 0, 0.8, 2000, 0, 16, 100, 64, new SimpleMeterRegistry());
+        try {
+            BatchRecommendationRequest.Entry entry = new BatchRecommendationRequest.Entry("S003", GraphType.SONG_BASED,
+                    AlgoType.BFS);
+            assertThrows(IllegalArgumentException.class, () -> service.recommendBatch(List.of(entry, entry, entry), 10));
+            assertThrows(IllegalArgumentException.class, () -> service.recommendBatch(
+                    List.of(new BatchRecommendationRequest.Entry("S003", null, AlgoType.BFS)), 10));
+            assertThrows(IllegalArgumentException.class, () -> service.recommendBatch(List.of(entry), 0));
+            assertEquals(2, service.recommendBatch(List.of(entry, entry), 10).size());
+        } finally {
+            service.close();
+        }
+    }
+
+    private List<String> ids(List<RecommendationDto> recommendations) {
+        return recommendations.stream().map(RecommendationDto::getSongId).toList();
+    }
+}
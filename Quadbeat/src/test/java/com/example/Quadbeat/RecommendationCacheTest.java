@@ -0,0 +1,68 @@
+package com.example.Quadbeat;
+
+import Quadbeat.AlgoType;
+import Quadbeat.GraphType;
+import Quadbeat.RecommendationCache;
+import Quadbeat.RecommendationDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationCacheTest {
+
+    private static List<RecommendationDto> results(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new RecommendationDto("S" + i, "Title " + i, "Artist", i))
+                .toList();
+    }
+
+    @Test
+    void servesShorterLimitsFromTheCachedPrefix() {
+        RecommendationCache cache = new RecommendationCache(10);
+        cache.put("S001", GraphType.SONG_BASED, AlgoType.BFS, 10, results(10));
+
+        assertEquals(5, cache.get("S001", GraphType.SONG_BASED, AlgoType.BFS, 5).size());
+        assertNull(cache.get("S001", GraphType.SONG_BASED, AlgoType.BFS, 20));
+        assertNull(cache.get("S001", GraphType.SONG_BASED, AlgoType.DIJKSTRA, 5));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // Fewer results than the limit means the traversal ran out, so any limit is covered
+        cache.put("S002", GraphType.SONG_BASED, AlgoType.BFS, 10, results(3));
+        assertEquals(3, cache.get("S002", GraphType.SONG_BASED, AlgoType.BFS, 50).size());
+    }
+
+    @Test
+    void servesPprAndAnnListsOnlyForTheLimitTheyWereComputedWith() {
+        RecommendationCache cache = new RecommendationCache(10);
+        for (AlgoType algoType : new AlgoType[] {AlgoType.PPR, AlgoType.ANN}) {
+            cache.put("S001", GraphType.SONG_BASED, algoType, 10, results(10));
+            cache.put("S002", GraphType.SONG_BASED, algoType, 10, results(3));
+
+            assertNull(cache.get("S001", GraphType.SONG_BASED, algoType, 5));
+            assertNull(cache.get("S002", GraphType.SONG_BASED, algoType, 50));
+            assertEquals(10, cache.get("S001", GraphType.SONG_BASED, algoType, 10).size());
+
+            cache.put("S001", GraphType.SONG_BASED, algoType, 5, results(5));
+            assertEquals(5, cache.get("S001", GraphType.SONG_BASED, algoType, 5).size());
+            assertEquals(10, cache.get("S001", GraphType.SONG_BASED, algoType, 10).size());
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        RecommendationCache cache = new RecommendationCache(2);
+        cache.put("S001", GraphType.SONG_BASED, AlgoType.BFS, 10, results(10));
+        cache.put("S002", GraphType.SONG_BASED, AlgoType.BFS, 10, results(10));
+        cache.get("S001", GraphType.SONG_BASED, AlgoType.BFS, 10);
+        cache.put("S003", GraphType.SONG_BASED, AlgoType.BFS, 10, results(10));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get("S001", GraphType.SONG_BASED, AlgoType.BFS, 10));
+        assertNull(cache.get("S002", GraphType.SONG_BASED, AlgoType.BFS, 10));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.Quadbeat;
+
+import Quadbeat.AlgoType;
+import Quadbeat.GraphType;
+import Quadbeat.MoodSeedPolicy;
+import Quadbeat.RecommendationCache;
+import Quadbeat.RecommendationService;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of uncached /recommend requests from several threads, with the per-request
+ * diagnostics off (the default) and on at DEBUG, written either synchronously or through
+ * an async appender like the one in logback-spring.xml. Events go to /dev/null, so this
+ * measures formatting and appender contention, not terminal speed.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=RecommendationLoggingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RecommendationLoggingBenchmark {
+    private static final String[] SEEDS = {"S003", "S010", "S120", "S250", "S404", "S512", "S777", "S901"};
+
+    @Param({"info", "debug"})
+    public String level;
+
+    @Param({"sync", "async"})
+    public String appender;
+
+    private RecommendationService service;
+
+    @Setup
+    public void setUp() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger{36} - %msg%n");
+        encoder.start();
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile("/dev/null");
+        file.setEncoder(encoder);
+        file.start();
+        Appender<ILoggingEvent> target = file;
+        if (appender.equals("async")) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(20);
+            async.setNeverBlock(true);
+            async.addAppender(file);
+            async.start();
+            target = async;
+        }
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(target);
+        context.getLogger("Quadbeat").setLevel(Level.toLevel(level));
+        context.getLogger("model").setLevel(Level.toLevel(level));
+
+        service = new RecommendationService("../Dataset/songs_dataset.csv", "", false, 500, 0.73, Integer.MAX_VALUE,
+                RecommendationCache.Mode.OFF, 0, 10, Set.of(), 60_000, MoodSeedPolicy.MOST_POPULAR, 3, 0, 1000, 0, 0.8, 2000, 0, 16, 100, 64, new SimpleMeterRegistry());
+        service.recommend(SEEDS[0], GraphType.SONG_BASED, AlgoType.DIJKSTRA, 10);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<?> recommend(Cursor cursor) {
+        String seed = SEEDS[cursor.next++ & (SEEDS.length - 1)];
+        return service.recommend(seed, GraphType.SONG_BASED, AlgoType.DIJKSTRA, 10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RecommendationLoggingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.Quadbeat;
+
+import Quadbeat.RecommendationMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import model.GraphBuilder;
+import model.Recommendation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationMetricsTest {
+
+    @Test
+    void recordsTraversalSizesBeforeAndAfterTheFilter() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        builder.setTraversalListener(new RecommendationMetrics(registry));
+
+        List<Recommendation> recs = builder.recommend("S003", GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.DIJKSTRA, 5, index -> index % 2 == 0, false);
+
+        DistributionSummary before = registry.get("quadbeat.traversal.results")
+                .tags("graph", "SONG_BASED", "algorithm", "DIJKSTRA", "stage", "before-filter").summary();
+        DistributionSummary after = registry.get("quadbeat.traversal.results")
+                .tags("graph", "SONG_BASED", "algorithm", "DIJKSTRA", "stage", "after-filter").summary();
+        DistributionSummary expanded = registry.get("quadbeat.traversal.expanded")
+                .tags("graph", "SONG_BASED", "algorithm", "DIJKSTRA").summary();
+        assertEquals(1, after.count());
+        assertEquals(recs.size(), after.totalAmount());
+        assertTrue(before.totalAmount() > after.totalAmount());
+        assertTrue(expanded.totalAmount() >= 1);
+    }
+}
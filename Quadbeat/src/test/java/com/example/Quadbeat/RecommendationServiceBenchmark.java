@@ -0,0 +1,91 @@
+package com.example.Quadbeat;
+
+import Quadbeat.AlgoType;
+import Quadbeat.GraphType;
+import Quadbeat.MoodSeedPolicy;
+import Quadbeat.RecommendationCache;
+import Quadbeat.RecommendationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import model.Song;
+import model.SyntheticCatalog;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one /recommend request for the top 10 through RecommendationService, on a
+ * generated catalog: seed lookup, traversal, duplicate filter, DTOs and metrics. MOOD_BASED
+ * requests are seeded by a mood, the others by a song. With the lazy cache every seed is
+ * cached after warmup, so that mode measures the hit path.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=RecommendationServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class RecommendationServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    @Param({"SONG_BASED", "ARTIST_BASED", "MOOD_BASED"})
+    public GraphType graphType;
+
+    @Param({"BFS", "DIJKSTRA", "PPR", "ANN"})
+    public AlgoType algoType;
+
+    @Param({"off", "lazy"})
+    public String cache;
+
+    private Path csv;
+    private RecommendationService service;
+    private String[] seeds;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Song> songs = SyntheticCatalog.generate(catalogSize, 42);
+        csv = Files.createTempFile("quadbeat-" + catalogSize + "-", ".csv");
+        SyntheticCatalog.writeCsv(songs, csv);
+        service = new RecommendationService(csv.toString(), "", false, 500, 0.73, Integer.MAX_VALUE,
+                RecommendationCache.Mode.valueOf(cache.toUpperCase()), 10_000, 10, Set.of(), 600_000,
+                MoodSeedPolicy.MOST_POPULAR, 3, 0, 1000, 0, 0.8, 2000, 0, 16, 100, 64, new SimpleMeterRegistry());
+
+        Random random = new Random(7);
+        seeds = new String[1024];
+        for (int k = 0; k < seeds.length; k++) {
+            seeds[k] = graphType == GraphType.MOOD_BASED
+                    ? SyntheticCatalog.MOODS[random.nextInt(SyntheticCatalog.MOODS.length)]
+                    : songs.get(random.nextInt(catalogSize)).getSongId();
+        }
+        service.recommend(seeds[0], graphType, algoType, 10);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.close();
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public List<?> recommend() {
+        next = (next + 1) & (seeds.length - 1);
+        return service.recommend(seeds[next], graphType, algoType, 10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RecommendationServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
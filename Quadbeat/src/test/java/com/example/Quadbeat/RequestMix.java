@@ -0,0 +1,131 @@
+package com.example.Quadbeat;
+
+import Quadbeat.AlgoType;
+import Quadbeat.GraphType;
+import model.Song;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * The requests a load test sends, drawn the way real traffic would draw them:
+ * - /recommend seeds are Zipf-distributed over the songs ranked by popularity, so a few
+ *   hits get most of the requests and the long tail still shows up; MOOD_BASED seeds
+ *   are moods, as often as there are songs with them
+ * - every GraphType x AlgoType combination gets an equal share of /recommend
+ * - /search is split between type-ahead prefixes of 2 to 6 characters and a word from
+ *   a title, with one query in twenty matching nothing
+ *
+ * Each request carries the name of the class it is reported under. The same catalog
+ * and seed always give the same sequence.
+ */
+class RequestMix {
+    static final String[] RECOMMEND_CLASSES;
+    static final String[] SEARCH_CLASSES = {"search prefix", "search substring"};
+
+    static {
+        List<String> classes = new ArrayList<>();
+        for (GraphType graphType : GraphType.values()) {
+            for (AlgoType algoType : AlgoType.values()) {
+                classes.add("recommend " + graphType + " " + algoType);
+            }
+        }
+        RECOMMEND_CLASSES = classes.toArray(new String[0]);
+    }
+
+    record Request(String requestClass, URI uri) {
+    }
+
+    private final URI base;
+    private final double searchShare;
+    private final Random random;
+    private final List<Song> byPopularity;
+    private final double[] seedCumulative;
+    private final String[] moods;
+    private final double[] moodCumulative;
+
+    RequestMix(URI base, List<Song> songs, double searchShare, long seed) {
+        this.base = base;
+        this.searchShare = searchShare;
+        this.random = new Random(seed);
+        byPopularity = new ArrayList<>(songs);
+        byPopularity.sort(Comparator.comparingDouble(Song::getPopularity).reversed());
+        seedCumulative = new double[byPopularity.size()];
+        double total = 0;
+        for (int rank = 0; rank < seedCumulative.length; rank++) {
+            total += 1.0 / (rank + 1);
+            seedCumulative[rank] = total;
+        }
+        Map<String, Integer> moodCounts = new TreeMap<>();
+        for (Song song : songs) {
+            moodCounts.merge(song.getMood(), 1, Integer::sum);
+        }
+        moods = moodCounts.keySet().toArray(new String[0]);
+        moodCumulative = new double[moods.length];
+        total = 0;
+        for (int k = 0; k < moods.length; k++) {
+            total += moodCounts.get(moods[k]);
+            moodCumulative[k] = total;
+        }
+    }
+
+    Request next() {
+        return random.nextDouble() < searchShare ? search() : recommend();
+    }
+
+    private Request recommend() {
+        GraphType graphType = GraphType.values()[random.nextInt(GraphType.values().length)];
+        AlgoType algoType = AlgoType.values()[random.nextInt(AlgoType.values().length)];
+        String seed = graphType == GraphType.MOOD_BASED ? moods[pick(moodCumulative)]
+                : byPopularity.get(pick(seedCumulative)).getSongId();
+        return new Request("recommend " + graphType + " " + algoType, uri("/recommend?songId=" + encode(seed)
+                + "&graphType=" + graphType + "&algorithm=" + algoType + "&limit=10"));
+    }
+
+    private Request search() {
+        boolean prefix = random.nextBoolean();
+        String title = byPopularity.get(pick(seedCumulative)).getTitle().toLowerCase(Locale.ROOT);
+        String query;
+        if (random.nextInt(20) == 0) {
+            query = "zq" + Integer.toString(random.nextInt(1 << 20), 36);
+        } else if (prefix) {
+            query = title.substring(0, Math.min(title.length(), 2 + random.nextInt(5)));
+        } else {
+            String[] words = title.split(" ");
+            query = words[random.nextInt(words.length)];
+        }
+        return new Request(prefix ? SEARCH_CLASSES[0] : SEARCH_CLASSES[1],
+                uri("/search?query=" + encode(query) + "&prefix=" + prefix + "&limit=20"));
+    }
+
+    private int pick(double[] cumulative) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] <= target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private URI uri(String pathAndQuery) {
+        return base.resolve(pathAndQuery);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
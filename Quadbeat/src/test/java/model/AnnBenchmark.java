@@ -0,0 +1,72 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top 10 from a random seed of a generated catalog by ANN at several efSearch settings,
+ * against a Dijkstra traversal of the built graph. Setup prints the recall@10 of each
+ * setting against the graph, so the latency can be read next to what it buys.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=AnnBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AnnBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    @Param({"SONG_BASED", "ARTIST_BASED"})
+    public GraphBuilder.GraphType graph;
+
+    @Param({"16", "64", "256"})
+    public int efSearch;
+
+    private GraphBuilder builder;
+    private int[] seeds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        builder = SyntheticCatalog.builder(catalogSize, 42);
+        builder.buildAllGraphs();
+        builder.setAnnEfSearch(efSearch);
+        long start = System.currentTimeMillis();
+        builder.buildAnnIndex(graph);
+        System.out.printf("%nANN index built in %d ms; %s%n", System.currentTimeMillis() - start,
+                builder.annRecall(graph, 10, 1000, efSearch, 1));
+        Random random = new Random(7);
+        seeds = new int[1024];
+        for (int k = 0; k < seeds.length; k++) {
+            seeds[k] = random.nextInt(catalogSize);
+        }
+    }
+
+    @Benchmark
+    public List<Recommendation> ann() {
+        next = (next + 1) & (seeds.length - 1);
+        return builder.recommend(new int[] {seeds[next]}, graph, GraphBuilder.AlgoType.ANN, 10, index -> true, false);
+    }
+
+    @Benchmark
+    public List<Recommendation> dijkstra() {
+        next = (next + 1) & (seeds.length - 1);
+        return builder.recommend(new int[] {seeds[next]}, graph, GraphBuilder.AlgoType.DIJKSTRA, 10, index -> true,
+                false);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AnnBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,46 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading a generated catalog from CSV into a fresh GraphBuilder: parsing, the
+ * song table and the search and mood indexes, but no graphs.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=CatalogLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class CatalogLoadBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private Path csv;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = SyntheticCatalog.writeTempCsv(catalogSize, 42);
+    }
+
+    @Benchmark
+    public GraphBuilder loadSongsFromCSV() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV(csv.toString());
+        return builder;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CatalogLoadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvSongLoaderTest {
+
+    private static final String HEADER = "song_id,title,artist,language,genre,release_year,mood,tempo,popularity\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesQuotedFieldsNumbersAndReportsBadRows() throws IOException {
+        Path csv = dir.resolve("songs.csv");
+        Files.writeString(csv, HEADER
+                + "S1, \"Hello, World\" ,Adele,English,Pop,2015,Melancholy,79,0.9\r\n"
+                + "S2,\"Say \"\"Hi\"\"\",\"Artist, The\",English,Rock,2019,Energetic,1.2e2,0.12345678901234567890\n"
+                + "\n"
+                + "S3,Broken,Nobody,English,Pop,twenty,Neutral,90,0.5\n"
+                + "S4,Short,Row\n"
+                + "S5,Last,Someone,Hindi,Dance,2020,Energetic,-0.5,1");
+
+        SongTable songs = new SongTable();
+        CsvSongLoader.Result result = new CsvSongLoader().load(csv, songs);
+
+        assertEquals(3, result.getLoaded());
+        assertEquals("Hello, World", songs.getTitle(0));
+        assertEquals("Say \"Hi\"", songs.getTitle(1));
+        assertEquals("Artist, The", songs.getArtist(1));
+        assertEquals(2015, songs.getReleaseYear(0));
+        assertEquals(79.0, songs.getTempo(0));
+        assertEquals(120.0, songs.getTempo(1));
+        assertEquals(Double.parseDouble("0.12345678901234567890"), songs.getPopularity(1));
+        assertEquals(-0.5, songs.getTempo(2));
+        assertEquals(1.0, songs.getPopularity(2));
+
+        List<CsvSongLoader.RowError> errors = result.getErrors();
+        assertEquals(2, errors.size());
+        assertEquals(5, errors.get(0).getLine());
+        assertEquals(6, errors.get(1).getLine());
+    }
+
+    @Test
+    void parallelChunksKeepFileOrderAndLineNumbers() throws IOException {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(HEADER);
+        double[] popularities = new double[100_000];
+        for (int i = 0; i < popularities.length; i++) {
+            popularities[i] = random.nextDouble();
+            if (i == 77_777) {
+                text.append("bad row\n");
+            }
+            text.append("S").append(i).append(",\"Title, ").append(i).append("\",Artist ").append(i % 97)
+                    .append(",English,Genre ").append(i % 13).append(",2020,Mood ").append(i % 3)
+                    .append(",").append(60 + i % 91).append(",").append(popularities[i]).append("\n");
+        }
+        Path csv = dir.resolve("large.csv");
+        Files.writeString(csv, text);
+
+        SongTable songs = new SongTable();
+        CsvSongLoader.Result result = new CsvSongLoader().load(csv, songs);
+
+        assertEquals(popularities.length, result.getLoaded());
+        for (int i = 0; i < popularities.length; i++) {
+            assertEquals("S" + i, songs.getSongId(i));
+            assertEquals(popularities[i], songs.getPopularity(i));
+        }
+        assertEquals(1, result.getErrors().size());
+        assertEquals(77_777 + 2, result.getErrors().get(0).getLine());
+    }
+
+    @Test
+    void rowsWithoutIdsAreNumberedAcrossChunks() throws IOException {
+        StringBuilder text = new StringBuilder("title,artist,genre,popularity\n");
+        int rows = 150_000;
+        for (int i = 0; i < rows; i++) {
+            if (i == 99_999) {
+                text.append("\n");
+            }
+            text.append("\"A title long enough to spread the file over several chunks ").append(i)
+                    .append("\",Artist ").append(i % 97).append(",Genre ").append(i % 13).append(",0.5\n");
+        }
+        Path csv = dir.resolve("no-ids.csv");
+        Files.writeString(csv, text);
+        assertTrue(Files.size(csv) > 2 * (1 << 22));
+
+        SongTable songs = new SongTable();
+        CsvSongLoader.Result result = new CsvSongLoader().load(csv, songs);
+
+        assertEquals(rows, result.getLoaded());
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < rows; i++) {
+            assertTrue(ids.add(songs.getSongId(i)), songs.getSongId(i));
+            assertEquals(i, songs.indexOf(songs.getSongId(i)));
+        }
+        assertEquals("1", songs.getSongId(0));
+        assertEquals("101002", songs.getSongId(101_000));
+    }
+
+    @Test
+    void loadsHindiSongsByHeaderName() throws IOException {
+        SongTable songs = new SongTable();
+        CsvSongLoader.Result result = new CsvSongLoader(Charset.forName("windows-1252"))
+                .load(Path.of("../Dataset/hindi_songs.csv"), songs);
+
+        assertEquals(0, result.getErrors().size());
+        assertEquals(2420, result.getLoaded());
+        assertEquals("1", songs.getSongId(0));
+        assertEquals("Aankh Marey", songs.getTitle(0));
+        assertEquals("Kumar Sanu, Mika Singh, Neha Kakkar", songs.getArtist(0));
+        assertEquals("BollywoodDance", songs.getGenre(0));
+        assertEquals("Energetic", songs.getMood(0));
+        assertEquals(8.8 / 10, songs.getPopularity(0));
+        assertEquals(Double.NaN, songs.getTempo(0));
+    }
+}
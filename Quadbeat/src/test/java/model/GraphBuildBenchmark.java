@@ -0,0 +1,63 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each build*Graph method on a generated catalog. Any two songs within 10 BPM
+ * are linked in SONG_BASED and MOOD_BASED, so edge counts grow with the square of the
+ * catalog size; at 10,000 songs each graph has millions of edges, and the larger sizes
+ * CatalogLoadBenchmark uses are out of reach.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=GraphBuildBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class GraphBuildBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    private GraphBuilder builder;
+
+    @Setup
+    public void setUp() {
+        builder = SyntheticCatalog.builder(catalogSize, 42);
+    }
+
+    @Benchmark
+    public Graph buildSongBasedGraph() {
+        builder.buildSongBasedGraph();
+        return builder.getGraph(GraphBuilder.GraphType.SONG_BASED);
+    }
+
+    @Benchmark
+    public Graph buildArtistBasedGraph() {
+        builder.buildArtistBasedGraph();
+        return builder.getGraph(GraphBuilder.GraphType.ARTIST_BASED);
+    }
+
+    @Benchmark
+    public Graph buildMoodBasedGraph() {
+        builder.buildMoodBasedGraph();
+        return builder.getGraph(GraphBuilder.GraphType.MOOD_BASED);
+    }
+
+    @Benchmark
+    public Graph buildAllGraphs() {
+        builder.buildAllGraphs();
+        return builder.getGraph(GraphBuilder.GraphType.MOOD_BASED);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GraphBuildBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,523 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.ToDoubleBiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GraphBuilderTest {
+
+    @Test
+    void candidateGraphsMatchAllPairsOnSongsDataset() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        buildSeparately(builder);
+        assertGraphsMatchAllPairs(builder, builder.getSongs());
+    }
+
+    @Test
+    void candidateGraphsMatchAllPairsOnHindiSongs() {
+        GraphBuilder builder = new GraphBuilder();
+        List<Song> songs = hindiSongs();
+        songs.forEach(builder::addSong);
+        buildSeparately(builder);
+        assertGraphsMatchAllPairs(builder, songs);
+    }
+
+    @Test
+    void fusedGraphsMatchAllPairsOnSongsDataset() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        assertGraphsMatchAllPairs(builder, builder.getSongs());
+    }
+
+    @Test
+    void fusedGraphsMatchAllPairsOnHindiSongs() {
+        GraphBuilder builder = new GraphBuilder();
+        List<Song> songs = hindiSongs();
+        songs.forEach(builder::addSong);
+        builder.buildAllGraphs();
+        assertGraphsMatchAllPairs(builder, songs);
+    }
+
+    @Test
+    void buildProgressTracksEachGraphSeparately() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            assertEquals(0.0, builder.getBuildProgress(type), type.name());
+        }
+
+        builder.buildArtistBasedGraph();
+        assertEquals(1.0, builder.getBuildProgress(GraphBuilder.GraphType.ARTIST_BASED));
+        assertEquals(0.0, builder.getBuildProgress(GraphBuilder.GraphType.SONG_BASED));
+
+        builder.buildAllGraphs();
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            assertEquals(1.0, builder.getBuildProgress(type), type.name());
+        }
+    }
+
+    @Test
+    void boundedDijkstraReturnsThePrefixOfTheFullSearch() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            List<Recommendation> all = builder.recommend("S003", type, GraphBuilder.AlgoType.DIJKSTRA);
+            List<Recommendation> top = builder.recommend("S003", type, GraphBuilder.AlgoType.DIJKSTRA,
+                    10, index -> true, true);
+
+            assertEquals(Math.min(10, all.size()), top.size(), type.name());
+            for (int k = 0; k < top.size(); k++) {
+                assertEquals(all.get(k).getScore(), top.get(k).getScore(), type.name());
+                if (k > 0) {
+                    assertTrue(top.get(k - 1).getScore() >= top.get(k).getScore(), type.name());
+                }
+            }
+            // Most similar first: no path is more similar than the seed's heaviest edge
+            Graph graph = builder.getGraph(type);
+            int seed = builder.getSongIndex("S003");
+            double heaviest = 0;
+            for (int k = 0; k < graph.degree(seed); k++) {
+                heaviest = Math.max(heaviest, graph.weight(seed, k));
+            }
+            assertEquals(heaviest, top.get(0).getScore(), type.name());
+            assertEquals(1, top.get(0).getHops(), type.name());
+            assertTrue(builder.recommend("S003", type, GraphBuilder.AlgoType.DIJKSTRA, 0, index -> true, false).isEmpty());
+            assertTrue(builder.recommend("S003", type, GraphBuilder.AlgoType.BFS, 0, index -> true, false).isEmpty());
+        }
+    }
+
+    @Test
+    void bfsHonoursLimitDepthAndWeightCutoff() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        builder.setBfsMinWeight(0.8);
+        builder.setBfsMaxDepth(1);
+
+        int seed = builder.getSongIndex("S003");
+        Graph graph = builder.getGraph(GraphBuilder.GraphType.SONG_BASED);
+        Set<Integer> neighbors = new HashSet<>();
+        for (int k = 0; k < graph.degree(seed); k++) {
+            if (graph.weight(seed, k) >= 0.8) {
+                neighbors.add(graph.target(seed, k));
+            }
+        }
+
+        List<Recommendation> all = builder.recommend("S003", GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.BFS);
+        assertEquals(neighbors.size(), all.size());
+        for (Recommendation rec : all) {
+            assertTrue(neighbors.contains(rec.getSongIndex()));
+            assertEquals(1, rec.getHops());
+        }
+
+        List<Recommendation> top = builder.recommend("S003", GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.BFS, 2, index -> true, true);
+        assertEquals(2, top.size());
+        assertEquals(seed, top.get(0).getPredecessor());
+    }
+
+    @Test
+    void multiSeedDijkstraScoresEachSongByItsNearestSeed() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        int[] seeds = builder.getMoodIndex().top("energetic", 3);
+        assertEquals(3, seeds.length);
+
+        Map<Integer, Double> nearest = new HashMap<>();
+        for (int seed : seeds) {
+            for (Recommendation rec : builder.recommend(new int[] {seed}, GraphBuilder.GraphType.MOOD_BASED,
+                    GraphBuilder.AlgoType.DIJKSTRA, Integer.MAX_VALUE, index -> true, false)) {
+                nearest.merge(rec.getSongIndex(), rec.getScore(), Math::max);
+            }
+        }
+        for (int seed : seeds) {
+            nearest.remove(seed);
+        }
+
+        List<Recommendation> all = builder.recommend(seeds, GraphBuilder.GraphType.MOOD_BASED,
+                GraphBuilder.AlgoType.DIJKSTRA, Integer.MAX_VALUE, index -> true, false);
+        assertEquals(nearest.size(), all.size());
+        for (Recommendation rec : all) {
+            assertEquals(nearest.get(rec.getSongIndex()), rec.getScore(), 1e-9);
+        }
+    }
+
+    @Test
+    void playlistDijkstraCombinesSeparateSearchesFromEachSeed() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        int[] seeds = Arrays.stream(new String[] {"S003", "S120", "S512", "S777"}).mapToInt(builder::getSongIndex).toArray();
+
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            Map<Integer, Double> sum = new HashMap<>();
+            Map<Integer, Double> max = new HashMap<>();
+            Map<Integer, Double> decayed = new HashMap<>();
+            for (int i = 0; i < seeds.length; i++) {
+                double weight = Math.pow(0.5, seeds.length - 1 - i);
+                double[] similarity = pathSimilarities(builder.getGraph(type), seeds[i]);
+                for (int node = 0; node < similarity.length; node++) {
+                    if (similarity[node] > 0 && node != seeds[i]) {
+                        sum.merge(node, similarity[node], Double::sum);
+                        max.merge(node, similarity[node], Math::max);
+                        decayed.merge(node, similarity[node] * weight, Double::sum);
+                    }
+                }
+            }
+            assertPlaylistScores(sum, builder, seeds, type, GraphBuilder.SeedAggregation.SUM);
+            assertPlaylistScores(max, builder, seeds, type, GraphBuilder.SeedAggregation.MAX);
+            assertPlaylistScores(decayed, builder, seeds, type, GraphBuilder.SeedAggregation.DECAYED);
+        }
+    }
+
+    @Test
+    void playlistBfsReachesWhatEachSeedReachesAtTheNearestDepth() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        builder.setBfsMaxDepth(3);
+        int[] seeds = Arrays.stream(new String[] {"S003", "S120", "S512", "S777"}).mapToInt(builder::getSongIndex).toArray();
+
+        Map<Integer, Integer> nearest = new HashMap<>();
+        for (int seed : seeds) {
+            for (Recommendation rec : builder.recommend(new int[] {seed}, GraphBuilder.GraphType.SONG_BASED,
+                    GraphBuilder.AlgoType.BFS, Integer.MAX_VALUE, index -> true, false)) {
+                nearest.merge(rec.getSongIndex(), rec.getHops(), Math::min);
+            }
+        }
+        for (int seed : seeds) {
+            nearest.remove(seed);
+        }
+
+        List<Recommendation> all = builder.recommendPlaylist(seeds, GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.BFS, GraphBuilder.SeedAggregation.SUM, 0.8, Integer.MAX_VALUE, index -> true);
+        assertEquals(nearest.size(), all.size());
+        for (int k = 0; k < all.size(); k++) {
+            Recommendation rec = all.get(k);
+            assertEquals(nearest.get(rec.getSongIndex()), rec.getHops());
+            assertTrue(rec.getScore() > 0);
+            if (k > 0) {
+                assertTrue(all.get(k - 1).getScore() >= rec.getScore());
+            }
+        }
+
+        List<Recommendation> top = builder.recommendPlaylist(seeds, GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.BFS, GraphBuilder.SeedAggregation.SUM, 0.8, 5, index -> index % 2 == 0);
+        assertEquals(all.stream().filter(rec -> rec.getSongIndex() % 2 == 0).limit(5)
+                .map(Recommendation::getSongIndex).toList(), top.stream().map(Recommendation::getSongIndex).toList());
+    }
+
+    @Test
+    void pprConvergesToPowerIterationAndRepeatsItself() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        builder.setPprWalks(100_000);
+        builder.setPprBudgetMillis(0);
+        int seed = builder.getSongIndex("S003");
+        Graph graph = builder.getGraph(GraphBuilder.GraphType.SONG_BASED);
+
+        // Visits after the first step, as the walks count them: sum over t >= 1 of 0.15 * 0.85^t * P^t
+        double[] walk = new double[graph.nodeCount()];
+        double[] expected = new double[graph.nodeCount()];
+        walk[seed] = 1;
+        for (int step = 1; step <= 64; step++) {
+            double[] next = new double[graph.nodeCount()];
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                double total = 0;
+                for (int k = 0; k < graph.degree(node); k++) {
+                    total += graph.weight(node, k);
+                }
+                for (int k = 0; k < graph.degree(node); k++) {
+                    next[graph.target(node, k)] += 0.85 * walk[node] * graph.weight(node, k) / total;
+                }
+            }
+            walk = next;
+            for (int node = 0; node < walk.length; node++) {
+                expected[node] += 0.15 * walk[node];
+            }
+        }
+
+        List<Recommendation> all = builder.recommend(new int[] {seed}, GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.PPR, Integer.MAX_VALUE, index -> true, false);
+        double error = 0;
+        for (int k = 0; k < all.size(); k++) {
+            Recommendation rec = all.get(k);
+            assertTrue(rec.getSongIndex() != seed);
+            assertEquals(expected[rec.getSongIndex()], rec.getScore(), 3e-4, "song " + rec.getSongIndex());
+            error += Math.abs(expected[rec.getSongIndex()] - rec.getScore());
+            if (k > 0) {
+                assertTrue(all.get(k - 1).getScore() >= rec.getScore());
+            }
+        }
+        assertTrue(error < 0.05, "L1 error " + error);
+
+        List<Recommendation> top = builder.recommend(new int[] {seed}, GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.PPR, 10, index -> true, false);
+        assertEquals(all.subList(0, 10).stream().map(Recommendation::getSongIndex).toList(),
+                top.stream().map(Recommendation::getSongIndex).toList());
+    }
+
+    @Test
+    void annFindsTheHeaviestNeighborsOfEveryGraphWithoutBuildingIt() {
+        GraphBuilder ann = new GraphBuilder();
+        ann.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        int seed = ann.getSongIndex("S003");
+        List<Recommendation> early = ann.recommend(new int[] {seed}, GraphBuilder.GraphType.SONG_BASED,
+                GraphBuilder.AlgoType.ANN, 10, index -> true, false);
+        assertEquals(10, early.size());
+        assertNull(ann.getGraph(GraphBuilder.GraphType.SONG_BASED));
+
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        Graph graph = builder.getGraph(GraphBuilder.GraphType.SONG_BASED);
+        double[] weights = new double[graph.degree(seed)];
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = graph.weight(seed, k);
+        }
+        Arrays.sort(weights);
+        for (int k = 0; k < early.size(); k++) {
+            // Scores are the weight less a tie-break under 0.05, heaviest first
+            assertEquals(weights[weights.length - 1 - k], early.get(k).getScore(), 0.05);
+            assertEquals(1, early.get(k).getHops());
+        }
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            GraphBuilder.AnnRecall recall = builder.annRecall(type, 10, 300, 64, 1);
+            assertTrue(recall.recall() >= 0.95, recall.toString());
+        }
+    }
+
+    @Test
+    void annFollowsInsertsAndRemovals() {
+        GraphBuilder full = new GraphBuilder();
+        full.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        List<Song> songs = full.getSongs();
+        GraphBuilder builder = new GraphBuilder();
+        songs.subList(0, 900).forEach(builder::addSong);
+        builder.buildAllGraphs();
+        builder.buildAnnIndex(GraphBuilder.GraphType.SONG_BASED);
+        songs.subList(900, songs.size()).forEach(builder::insertSong);
+        int removed = builder.getSongIndex(songs.get(950).getSongId());
+        builder.removeSong(songs.get(950).getSongId());
+
+        GraphBuilder.AnnRecall recall = builder.annRecall(GraphBuilder.GraphType.SONG_BASED, 10, 1000, 64, 1);
+        assertTrue(recall.recall() >= 0.95, recall.toString());
+        for (int seed = 0; seed < songs.size(); seed += 7) {
+            for (Recommendation rec : builder.recommend(new int[] {seed}, GraphBuilder.GraphType.SONG_BASED,
+                    GraphBuilder.AlgoType.ANN, 20, index -> true, false)) {
+                assertTrue(rec.getSongIndex() != removed && rec.getSongIndex() != seed);
+            }
+        }
+    }
+
+    @Test
+    void annFindsNeighborsWithoutTempos() {
+        // hindi_songs.csv has no tempo column, so every tempo loads as NaN
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/hindi_songs.csv");
+        assertTrue(Double.isNaN(builder.getSongTable().getTempo(0)));
+        builder.buildAllGraphs();
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            for (int seed = 0; seed < builder.getSongCount(); seed += 97) {
+                assertFalse(builder.recommend(new int[] {seed}, type, GraphBuilder.AlgoType.ANN, 10,
+                        index -> true, false).isEmpty(), type + " from " + seed);
+            }
+            // With no tempo to break ties, artist-based recall settles near 0.9
+            GraphBuilder.AnnRecall recall = builder.annRecall(type, 10, 300, 64, 1);
+            assertTrue(recall.recall() >= 0.85, recall.toString());
+        }
+    }
+
+    // Best product of edge weights over paths from the seed that stay at 0.3 or more,
+    // by relaxing every edge until none improves
+    private double[] pathSimilarities(Graph graph, int seed) {
+        double[] similarity = new double[graph.nodeCount()];
+        similarity[seed] = 1.0;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                for (int k = 0; similarity[node] > 0 && k < graph.degree(node); k++) {
+                    double candidate = similarity[node] * graph.weight(node, k);
+                    if (candidate >= 0.3 && candidate > similarity[graph.target(node, k)]) {
+                        similarity[graph.target(node, k)] = candidate;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return similarity;
+    }
+
+    private void assertPlaylistScores(Map<Integer, Double> expected, GraphBuilder builder, int[] seeds,
+                                      GraphBuilder.GraphType type, GraphBuilder.SeedAggregation aggregation) {
+        for (int seed : seeds) {
+            expected.remove(seed);
+        }
+        List<Recommendation> all = builder.recommendPlaylist(seeds, type, GraphBuilder.AlgoType.DIJKSTRA, aggregation,
+                0.5, Integer.MAX_VALUE, index -> true);
+        String name = type + " " + aggregation;
+        assertEquals(expected.size(), all.size(), name);
+        for (int k = 0; k < all.size(); k++) {
+            assertEquals(expected.get(all.get(k).getSongIndex()), all.get(k).getScore(), 1e-9, name);
+            if (k > 0) {
+                assertTrue(all.get(k - 1).getScore() >= all.get(k).getScore(), name);
+            }
+        }
+    }
+
+    @Test
+    void incrementalInsertsAndRemovalsMatchARebuild() {
+        GraphBuilder full = new GraphBuilder();
+        full.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        full.buildAllGraphs();
+        List<Song> songs = full.getSongs();
+
+        GraphBuilder incremental = new GraphBuilder();
+        songs.subList(0, 900).forEach(incremental::addSong);
+        incremental.buildAllGraphs();
+        songs.subList(900, songs.size()).forEach(incremental::insertSong);
+        Set<Integer> removed = Set.of(3, 450, 950);
+        for (int index : removed) {
+            assertTrue(incremental.removeSong(songs.get(index).getSongId()));
+        }
+        assertEquals(-1, incremental.getSongIndex(songs.get(950).getSongId()));
+
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            assertSameLists(full.getGraph(type), removed, incremental.getGraph(type), type.name());
+        }
+        incremental.compact();
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            assertTrue(incremental.getGraph(type) instanceof CsrGraph);
+            assertSameLists(full.getGraph(type), removed, incremental.getGraph(type), type.name());
+        }
+    }
+
+    @Test
+    void aStateStaysAsItWasThroughLaterUpdates() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+        builder.buildAnnIndex(GraphBuilder.GraphType.SONG_BASED);
+        builder.setPprBudgetMillis(0);
+        GraphBuilder.State before = builder.getState();
+        SongTable songs = before.getSongTable();
+        int size = songs.size();
+        String firstId = songs.getSongId(0);
+        Map<GraphBuilder.AlgoType, List<String>> expected = new EnumMap<>(GraphBuilder.AlgoType.class);
+        for (GraphBuilder.AlgoType algorithm : GraphBuilder.AlgoType.values()) {
+            expected.put(algorithm, ranked(builder.recommend(before, new int[] {1}, GraphBuilder.GraphType.SONG_BASED,
+                    algorithm, 20, index -> true, false)));
+        }
+
+        for (int k = 0; k < 50; k++) {
+            Song song = songs.getSong(k + 2);
+            builder.insertSong(new Song("X" + k, song.getTitle(), song.getArtist(), song.getLanguage(),
+                    song.getGenre(), song.getReleaseYear(), song.getMood(), song.getTempo(), song.getPopularity()));
+        }
+        builder.removeSong(firstId);
+        builder.compact();
+
+        assertEquals(size, songs.size());
+        assertEquals(0, songs.indexOf(firstId));
+        assertEquals(-1, songs.indexOf("X0"));
+        assertTrue(builder.getState().getSongTable().isRemoved(0));
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            assertEquals(size, before.getGraph(type).nodeCount(), type.name());
+            assertEquals(size + 50, builder.getGraph(type).nodeCount(), type.name());
+        }
+        for (GraphBuilder.AlgoType algorithm : GraphBuilder.AlgoType.values()) {
+            assertEquals(expected.get(algorithm), ranked(builder.recommend(before, new int[] {1},
+                    GraphBuilder.GraphType.SONG_BASED, algorithm, 20, index -> true, false)), algorithm.name());
+        }
+    }
+
+    private List<String> ranked(List<Recommendation> recommendations) {
+        return recommendations.stream().map(rec -> rec.getSongIndex() + ":" + rec.getScore()).toList();
+    }
+
+    // Every neighbor list of actual equals expected's with the removed nodes taken out
+    private void assertSameLists(Graph expected, Set<Integer> removed, Graph actual, String name) {
+        assertEquals(expected.nodeCount(), actual.nodeCount(), name);
+        for (int node = 0; node < expected.nodeCount(); node++) {
+            List<String> expectedList = new ArrayList<>();
+            for (int k = 0; k < expected.degree(node) && !removed.contains(node); k++) {
+                if (!removed.contains(expected.target(node, k))) {
+                    expectedList.add(expected.target(node, k) + ":" + expected.weight(node, k));
+                }
+            }
+            List<String> actualList = new ArrayList<>();
+            for (int k = 0; k < actual.degree(node); k++) {
+                actualList.add(actual.target(node, k) + ":" + actual.weight(node, k));
+            }
+            assertEquals(expectedList, actualList, name + " node " + node);
+        }
+    }
+
+    private void buildSeparately(GraphBuilder builder) {
+        builder.buildSongBasedGraph();
+        builder.buildArtistBasedGraph();
+        builder.buildMoodBasedGraph();
+    }
+
+    private void assertGraphsMatchAllPairs(GraphBuilder builder, List<Song> songs) {
+
+        assertSameEdges(allPairs(songs, GraphBuilder::songBasedWeight), builder.getSongBasedGraph());
+        assertSameEdges(allPairs(songs, GraphBuilder::artistBasedWeight), builder.getArtistBasedGraph());
+        assertSameEdges(allPairs(songs, GraphBuilder::moodBasedWeight), builder.getMoodBasedGraph());
+    }
+
+    // The nested loops the candidate engine replaces
+    private Map<String, List<Edge>> allPairs(List<Song> songs, ToDoubleBiFunction<Song, Song> weightFunction) {
+        Map<String, List<Edge>> graph = new HashMap<>();
+        songs.forEach(song -> graph.put(song.getSongId(), new ArrayList<>()));
+        for (int i = 0; i < songs.size(); i++) {
+            for (int j = i + 1; j < songs.size(); j++) {
+                double weight = weightFunction.applyAsDouble(songs.get(i), songs.get(j));
+                if (weight >= 0.3) {
+                    graph.get(songs.get(i).getSongId()).add(new Edge(songs.get(j).getSongId(), weight));
+                    graph.get(songs.get(j).getSongId()).add(new Edge(songs.get(i).getSongId(), weight));
+                }
+            }
+        }
+        return graph;
+    }
+
+    private void assertSameEdges(Map<String, List<Edge>> expected, Map<String, List<Edge>> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String songId : expected.keySet()) {
+            assertEquals(describe(expected.get(songId)), describe(actual.get(songId)), songId);
+        }
+    }
+
+    private List<String> describe(List<Edge> edges) {
+        return edges.stream().map(Edge::toString).toList();
+    }
+
+    // hindi_songs.csv has no tempo column, so fill one in with a fixed seed for the
+    // edges to weigh tempo as they do on songs_dataset.csv
+    private List<Song> hindiSongs() {
+        GraphBuilder loader = new GraphBuilder();
+        loader.loadSongsFromCSV("../Dataset/hindi_songs.csv");
+        Random random = new Random(42);
+        List<Song> songs = new ArrayList<>();
+        for (Song song : loader.getSongs()) {
+            songs.add(new Song(song.getSongId(), song.getTitle(), song.getArtist(), song.getLanguage(),
+                    song.getGenre(), song.getReleaseYear(), song.getMood(), 60 + random.nextInt(91),
+                    song.getPopularity()));
+        }
+        return songs;
+    }
+}
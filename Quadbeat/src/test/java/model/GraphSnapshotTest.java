@@ -0,0 +1,99 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotRoundTripsSongsAndGraphs() throws IOException {
+        Path csv = Path.of("../Dataset/songs_dataset.csv");
+        GraphBuilder built = new GraphBuilder();
+        built.loadSongsFromCSV(csv.toString());
+        built.buildAllGraphs();
+        long checksum = GraphSnapshot.checksum(csv);
+        Path snapshot = dir.resolve("songs.qbsnap");
+        GraphSnapshot.write(snapshot, checksum, built);
+
+        GraphBuilder loaded = new GraphBuilder();
+        assertTrue(GraphSnapshot.read(snapshot, checksum, loaded));
+
+        assertEquals(built.getSongs().toString(), loaded.getSongs().toString());
+        assertEquals(built.getSongIndex("S003"), loaded.getSongIndex("S003"));
+        int size = built.getSongCount();
+        SongTable expectedSongs = built.getSongTable();
+        SongTable actualSongs = loaded.getSongTable();
+        for (int i = 0; i < size; i++) {
+            assertEquals(expectedSongs.getLanguage(i), actualSongs.getLanguage(i));
+            assertEquals(expectedSongs.getReleaseYear(i), actualSongs.getReleaseYear(i));
+            assertEquals(expectedSongs.getTempo(i), actualSongs.getTempo(i));
+            assertEquals(expectedSongs.getPopularity(i), actualSongs.getPopularity(i));
+        }
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            CsrGraph expected = (CsrGraph) built.getGraph(type);
+            CsrGraph actual = (CsrGraph) loaded.getGraph(type);
+            assertArrayEquals(expected.getOffsets(), actual.getOffsets(), type.name());
+            assertArrayEquals(expected.getTargets(), actual.getTargets(), type.name());
+            assertArrayEquals(expected.getWeights(), actual.getWeights(), type.name());
+        }
+    }
+
+    @Test
+    void snapshotKeepsInsertsAndRemovals() throws IOException {
+        GraphBuilder built = new GraphBuilder();
+        built.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        built.buildAllGraphs();
+        built.insertSong(new Song("X1", "Quokka Serenade", "Zyx Orchestra", "English", "Pop", 2024, "Happy", 120, 0.5));
+        int removed = built.getSongIndex("S003");
+        built.removeSong("S003");
+        Path snapshot = dir.resolve("songs.qbsnap");
+        GraphSnapshot.write(snapshot, 42, built);
+
+        GraphBuilder loaded = new GraphBuilder();
+        assertTrue(GraphSnapshot.read(snapshot, 42, loaded));
+        assertEquals(built.getSongCount(), loaded.getSongCount());
+        assertEquals(-1, loaded.getSongIndex("S003"));
+        assertEquals(built.getSongIndex("X1"), loaded.getSongIndex("X1"));
+        assertTrue(loaded.getSongTable().isRemoved(removed));
+        for (GraphBuilder.GraphType type : GraphBuilder.GraphType.values()) {
+            CsrGraph expected = CsrGraph.copyOf(built.getGraph(type));
+            CsrGraph actual = (CsrGraph) loaded.getGraph(type);
+            assertArrayEquals(expected.getOffsets(), actual.getOffsets(), type.name());
+            assertArrayEquals(expected.getTargets(), actual.getTargets(), type.name());
+            assertArrayEquals(expected.getWeights(), actual.getWeights(), type.name());
+        }
+    }
+
+    @Test
+    void staleOrCorruptSnapshotsAreRejected() throws IOException {
+        GraphBuilder built = new GraphBuilder();
+        built.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        built.buildAllGraphs();
+        Path snapshot = dir.resolve("songs.qbsnap");
+        GraphSnapshot.write(snapshot, 42, built);
+
+        assertFalse(GraphSnapshot.read(snapshot, 43, new GraphBuilder()));
+        assertTrue(GraphSnapshot.read(snapshot, -1, new GraphBuilder()));
+
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+        GraphBuilder untouched = new GraphBuilder();
+        assertFalse(GraphSnapshot.read(snapshot, 42, untouched));
+        assertEquals(0, untouched.getSongCount());
+
+        Files.write(snapshot, Arrays.copyOf(bytes, 10));
+        assertFalse(GraphSnapshot.read(snapshot, 42, new GraphBuilder()));
+        assertFalse(GraphSnapshot.read(dir.resolve("missing.qbsnap"), 42, new GraphBuilder()));
+    }
+}
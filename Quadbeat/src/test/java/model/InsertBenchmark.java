@@ -0,0 +1,66 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one insertSong or removeSong into a generated catalog with all three graphs and
+ * the SONG_BASED ANN index built. Each insert scores the new song against every song, so
+ * it grows with the catalog; everything else it does grows with the new song's degree.
+ * Background compactions are part of the measured cost. The catalog is rebuilt for every
+ * iteration, so it grows by no more than the inserts of one.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=InsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class InsertBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    private GraphBuilder builder;
+    private List<Song> newSongs;
+    private int inserted;
+    private int removed;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        newSongs = SyntheticCatalog.generate(4096, 7);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        builder = SyntheticCatalog.builder(catalogSize, 42);
+        builder.buildAllGraphs();
+        builder.buildAnnIndex(GraphBuilder.GraphType.SONG_BASED);
+        removed = 0;
+    }
+
+    @Benchmark
+    public int insertSong() {
+        Song song = newSongs.get(inserted++ & (newSongs.size() - 1));
+        return builder.insertSong(new Song("I" + inserted, song.getTitle(), song.getArtist(), song.getLanguage(),
+                song.getGenre(), song.getReleaseYear(), song.getMood(), song.getTempo(), song.getPopularity()));
+    }
+
+    @Benchmark
+    public boolean removeSong() {
+        // Every song of the catalog once, in a scattered order
+        int index = (int) ((removed++ * 7919L) % catalogSize);
+        return builder.removeSong(builder.getSongTable().getSongId(index));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(InsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,92 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoodIndexTest {
+
+    @Test
+    void ranksEachMoodByPopularityIgnoringCase() {
+        SongTable songs = new SongTable();
+        songs.add("A", "a", "x", "English", "Pop", 2020, "Happy", 100, 0.5);
+        songs.add("B", "b", "x", "English", "Pop", 2020, "happy ", 100, 0.9);
+        songs.add("C", "c", "x", "English", "Pop", 2020, "Sad", 100, 0.7);
+        songs.add("D", "d", "x", "English", "Pop", 2020, "HAPPY", 100, 0.5);
+        MoodIndex index = new MoodIndex(songs);
+
+        assertArrayEquals(new int[] {1, 0, 3}, index.top("Happy", 10));
+        assertArrayEquals(new int[] {1, 0}, index.top("happy", 2));
+        assertEquals(2, index.mostPopular("SAD"));
+        assertEquals(-1, index.mostPopular("Calm"));
+
+        songs.add("E", "e", "x", "English", "Pop", 2020, "Happy", 100, 1.0);
+        index.update();
+        songs.remove(1);
+        assertArrayEquals(new int[] {4, 0, 3}, index.top("happy", 10));
+    }
+
+    @Test
+    void copiesLeaveTheTablesAndIndexesTheyCameFromAsTheyWere() {
+        SongTable songs = new SongTable();
+        songs.add("A", "a", "x", "English", "Pop", 2020, "Happy", 100, 0.5);
+        songs.add("B", "b", "y", "English", "Pop", 2020, "Sad", 100, 0.9);
+        MoodIndex index = new MoodIndex(songs);
+
+        SongTable next = songs.copy();
+        next.add("C", "c", "z", "English", "Rock", 2020, "Happy", 100, 0.7);
+        next.add("A", "a2", "x", "English", "Pop", 2020, "Calm", 100, 0.1);
+        next.remove(0);
+        MoodIndex nextIndex = index.copyFor(next);
+        assertArrayEquals(new int[] {2}, nextIndex.top("happy", 10));
+        assertEquals(3, next.indexOf("A"));
+        assertEquals(-1, next.getArtistNames().codeOf("w"));
+
+        assertEquals(2, songs.size());
+        assertArrayEquals(new int[] {0}, index.top("happy", 10));
+        assertEquals(0, songs.indexOf("A"));
+        assertEquals(-1, songs.indexOf("C"));
+        assertEquals(-1, songs.getGenreNames().codeOf("Rock"));
+        assertEquals(-1, index.mostPopular("calm"));
+
+        // A second copy of the first table has to stop sharing with the one above
+        SongTable branch = songs.copy();
+        branch.add("D", "d", "w", "English", "Jazz", 2020, "Happy", 100, 0.6);
+        MoodIndex branchIndex = index.copyFor(branch);
+        assertArrayEquals(new int[] {2, 0}, branchIndex.top("happy", 10));
+        assertEquals(-1, branch.indexOf("C"));
+        assertEquals("w", branch.getArtist(2));
+        assertEquals("z", next.getArtist(2));
+        assertEquals("c", next.getTitle(2));
+        assertEquals(3, next.indexOf("A"));
+        assertEquals(0, branch.getGenreNames().codeOf("Pop"));
+        assertEquals(1, branch.getGenreNames().codeOf("Jazz"));
+        assertEquals(1, next.getGenreNames().codeOf("Rock"));
+    }
+
+    @Test
+    void weightedPicksFollowPopularityAndSkipRemovedSongs() {
+        SongTable songs = new SongTable();
+        songs.add("A", "a", "x", "English", "Pop", 2020, "Happy", 100, 0.9);
+        songs.add("B", "b", "x", "English", "Pop", 2020, "Happy", 100, 0.1);
+        songs.add("C", "c", "x", "English", "Pop", 2020, "Happy", 100, 0.0);
+        MoodIndex index = new MoodIndex(songs);
+
+        Random random = new Random(1);
+        int[] picks = new int[3];
+        for (int k = 0; k < 10000; k++) {
+            picks[index.weightedRandom("happy", random)]++;
+        }
+        assertTrue(picks[0] > 8500 && picks[0] < 9500, "picks of A: " + picks[0]);
+        assertEquals(0, picks[2]);
+
+        songs.remove(0);
+        for (int k = 0; k < 100; k++) {
+            assertTrue(index.weightedRandom("Happy", random) != 0);
+        }
+    }
+}
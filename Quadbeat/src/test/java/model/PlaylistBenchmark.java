@@ -0,0 +1,86 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playlist continuation from random playlists of a generated catalog, for the top 10 by
+ * summed affinity: one playlist traversal from all seeds, against what clients did
+ * before it, one full single-seed traversal per seed merged in a map.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=PlaylistBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PlaylistBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    @Param({"SONG_BASED", "ARTIST_BASED"})
+    public GraphBuilder.GraphType graph;
+
+    @Param({"BFS", "DIJKSTRA", "PPR"})
+    public GraphBuilder.AlgoType algorithm;
+
+    @Param({"5", "20"})
+    public int playlistSize;
+
+    private GraphBuilder builder;
+    private int[][] playlists;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        builder = SyntheticCatalog.builder(catalogSize, 42);
+        builder.buildAllGraphs();
+        // Depth 2 keeps unbounded BFS from walking the whole catalog once per seed
+        builder.setBfsMaxDepth(2);
+        Random random = new Random(7);
+        playlists = new int[256][playlistSize];
+        for (int[] playlist : playlists) {
+            for (int k = 0; k < playlistSize; k++) {
+                playlist[k] = random.nextInt(catalogSize);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Recommendation> playlist() {
+        next = (next + 1) & (playlists.length - 1);
+        return builder.recommendPlaylist(playlists[next], graph, algorithm, GraphBuilder.SeedAggregation.SUM, 0.8,
+                10, index -> true);
+    }
+
+    @Benchmark
+    public List<Map.Entry<Integer, Double>> separateSeeds() {
+        next = (next + 1) & (playlists.length - 1);
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int seed : playlists[next]) {
+            for (Recommendation rec : builder.recommend(new int[] {seed}, graph, algorithm, Integer.MAX_VALUE,
+                    index -> true, false)) {
+                scores.merge(rec.getSongIndex(), rec.getScore(), Double::sum);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed())
+                .limit(10)
+                .toList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PlaylistBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,79 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScratchPoolTest {
+
+    @Test
+    void reusesTheLastReleasedScratchBeforeCreatingAnother() {
+        ScratchPool pool = new ScratchPool(4);
+        TraversalScratch first = pool.acquire();
+        TraversalScratch second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+
+        assertSame(second, pool.acquire());
+        assertSame(first, pool.acquire());
+        assertEquals(2, pool.getCreated());
+        assertThrows(IllegalArgumentException.class, () -> new ScratchPool(0));
+    }
+
+    @Test
+    void scratchArraysGrowAheadOfACatalogGrowingASongAtATime() {
+        TraversalScratch scratch = new TraversalScratch();
+        scratch.beginPlaylist(1000);
+        scratch.endPlaylist();
+        scratch.beginPlaylist(1001);
+        assertEquals(1500, scratch.distance.length);
+        assertEquals(1500, scratch.seedMask.length);
+        double[] distance = scratch.distance;
+        long[] seedMask = scratch.seedMask;
+        for (int nodeCount = 1002; nodeCount <= 1500; nodeCount++) {
+            scratch.endPlaylist();
+            scratch.beginPlaylist(nodeCount);
+            scratch.heap.offer(nodeCount - 1, 1.0);
+            assertEquals(nodeCount - 1, scratch.heap.poll());
+        }
+        assertSame(distance, scratch.distance);
+        assertSame(seedMask, scratch.seedMask);
+    }
+
+    @Test
+    void manyVirtualThreadsNeverShareOrExceedTheCapacity() throws InterruptedException {
+        ScratchPool pool = new ScratchPool(3);
+        Set<TraversalScratch> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        AtomicInteger overlaps = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 1000; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int k = 0; k < 20; k++) {
+                    TraversalScratch scratch = pool.acquire();
+                    if (!inUse.add(scratch)) {
+                        overlaps.incrementAndGet();
+                    }
+                    Thread.yield();
+                    inUse.remove(scratch);
+                    pool.release(scratch);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, overlaps.get());
+        assertTrue(pool.getCreated() <= 3, "created " + pool.getCreated());
+    }
+}
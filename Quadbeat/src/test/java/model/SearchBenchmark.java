@@ -0,0 +1,99 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one /search query for the top 50 matches of a generated catalog, straight from
+ * the index and through GraphBuilder.searchSongs, which also turns rows into songs. Title
+ * words are Zipf-distributed, so a query for a rare word touches a small posting list
+ * whatever the catalog size; the per-query scan of every title and artist the index
+ * replaced is kept here as a baseline. Two-character queries, too short for trigrams,
+ * are measured on their own.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=SearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+    private static final int LIMIT = 50;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"false", "true"})
+    public boolean prefix;
+
+    private GraphBuilder builder;
+    private SongTable songs;
+    private SearchIndex index;
+    private String[] queries;
+    private String[] shortQueries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        builder = SyntheticCatalog.builder(catalogSize, 42);
+        songs = builder.getSongTable();
+        index = new SearchIndex(songs);
+        queries = new String[1024];
+        shortQueries = new String[queries.length];
+        for (int k = 0; k < queries.length; k++) {
+            String title = songs.getTitle(random.nextInt(catalogSize));
+            queries[k] = prefix ? title.substring(0, Math.min(4, title.length())) : title.substring(title.indexOf(' ') + 1);
+            int from = random.nextInt(Math.max(1, title.length() - 1));
+            shortQueries[k] = title.substring(from, Math.min(from + 2, title.length()));
+        }
+    }
+
+    @Benchmark
+    public void trigramIndex(Blackhole blackhole) {
+        blackhole.consume(index.search(nextQuery(), prefix, LIMIT, row -> true));
+    }
+
+    @Benchmark
+    public void twoCharacters(Blackhole blackhole) {
+        next = (next + 1) & (shortQueries.length - 1);
+        blackhole.consume(index.search(shortQueries[next], prefix, LIMIT, row -> true));
+    }
+
+    @Benchmark
+    public void searchSongs(Blackhole blackhole) {
+        blackhole.consume(builder.searchSongs(nextQuery(), prefix, LIMIT, row -> true));
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole blackhole) {
+        String query = nextQuery().toLowerCase();
+        int matches = 0;
+        for (int row = 0; row < songs.size(); row++) {
+            String title = songs.getTitle(row).toLowerCase();
+            String artist = songs.getArtist(row).toLowerCase();
+            if (prefix ? title.startsWith(query) || artist.startsWith(query)
+                    : title.contains(query) || artist.contains(query)) {
+                matches++;
+            }
+        }
+        blackhole.consume(matches);
+    }
+
+    private String nextQuery() {
+        next = (next + 1) & (queries.length - 1);
+        return queries[next];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
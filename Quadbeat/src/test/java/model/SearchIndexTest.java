@@ -0,0 +1,159 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    @Test
+    void matchesAScanOfEveryTitleAndArtist() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        SongTable songs = builder.getSongTable();
+        SearchIndex index = new SearchIndex(songs);
+
+        for (String query : queries(songs)) {
+            for (boolean prefix : new boolean[] {false, true}) {
+                int[] results = index.search(query, prefix, 0, row -> true);
+                assertEquals(scan(songs, query, prefix), new TreeSet<>(box(results)), query + " prefix=" + prefix);
+                for (int k = 1; k < results.length; k++) {
+                    assertTrue(songs.getPopularity(results[k - 1]) >= songs.getPopularity(results[k]), query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void limitCountsAcceptedRowsOnly() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        SongTable songs = builder.getSongTable();
+        SearchIndex index = new SearchIndex(songs);
+
+        // Short queries scan; with trigrams, a filter this picky makes the ranking go past the limit
+        for (String query : new String[] {"an", "the", "lov", "a"}) {
+            for (boolean prefix : new boolean[] {false, true}) {
+                int[] all = index.search(query, prefix, 0, row -> true);
+                int[] picked = index.search(query, prefix, 5, row -> row % 7 == 0);
+                List<Integer> expected = new ArrayList<>();
+                for (int row : all) {
+                    if (row % 7 == 0 && expected.size() < 5) {
+                        expected.add(row);
+                    }
+                }
+                assertEquals(expected, box(picked), query + " prefix=" + prefix);
+            }
+        }
+    }
+
+    @Test
+    void picksUpInsertedSongsAndSkipsRemovedOnes() {
+        GraphBuilder builder = new GraphBuilder();
+        builder.loadSongsFromCSV("../Dataset/songs_dataset.csv");
+        builder.buildAllGraphs();
+
+        int inserted = builder.insertSong(new Song("X1", "Quokka Serenade", "Zyx Orchestra", "English", "Pop",
+                2024, "Happy", 120, 0.5));
+        assertEquals(List.of("X1"), ids(builder.searchSongs("quokka")));
+        assertEquals(List.of("X1"), ids(builder.searchSongs("zyx orch")));
+        assertEquals(List.of("X1"), ids(builder.searchSongs("QUOK", true, 0, row -> true)));
+        assertEquals(List.of(), ids(builder.searchSongs("serenade", true, 0, row -> true)));
+
+        builder.removeSong("X1");
+        assertTrue(builder.getSongTable().isRemoved(inserted));
+        assertEquals(List.of(), ids(builder.searchSongs("quokka")));
+    }
+
+    @Test
+    void copiesMadeOneRowAtATimeMatchAFreshIndex() {
+        List<Song> catalog = SyntheticCatalog.generate(6_000, 3);
+        SongTable table = new SongTable();
+        catalog.subList(0, 3_000).forEach(table::add);
+        SearchIndex index = new SearchIndex(table);
+        SongTable firstTable = table;
+        SearchIndex first = index;
+        List<SongTable> tables = new ArrayList<>(List.of(table));
+        List<SearchIndex> indexes = new ArrayList<>(List.of(index));
+        for (int row = 3_000; row < catalog.size(); row++) {
+            table = table.copy();
+            table.add(catalog.get(row));
+            if (row % 700 == 0) {
+                table.remove(row - 1);
+            }
+            index = index.copyFor(table);
+            if (row % 1_000 == 0 || row == catalog.size() - 1) {
+                tables.add(table);
+                indexes.add(index);
+            }
+        }
+        // A copy of the first version can no longer append to what it shares
+        SongTable branch = firstTable.copy();
+        branch.add(new Song("X1", "Quokka Serenade", "Zyx Orchestra", "English", "Pop", 2024, "Happy", 120, 0.5));
+        tables.add(branch);
+        indexes.add(first.copyFor(branch));
+
+        List<String> queries = queries(table);
+        queries.add("quokka");
+        for (int k = 0; k < tables.size(); k++) {
+            SearchIndex fresh = new SearchIndex(tables.get(k));
+            for (String query : queries) {
+                for (boolean prefix : new boolean[] {false, true}) {
+                    assertEquals(box(fresh.search(query, prefix, 0, row -> true)),
+                            box(indexes.get(k).search(query, prefix, 0, row -> true)), k + ": " + query);
+                }
+            }
+        }
+        assertEquals(1, indexes.get(indexes.size() - 1).search("quokka", false, 0, row -> true).length);
+        assertEquals(0, indexes.get(indexes.size() - 2).search("quokka", false, 0, row -> true).length);
+    }
+
+    // Every substring of up to six characters of a sample of titles and artists, plus a few misses
+    private List<String> queries(SongTable songs) {
+        Random random = new Random(7);
+        Set<String> queries = new TreeSet<>(List.of("", "zzzq", "the ", "love", "LOVE", "a"));
+        for (int k = 0; k < 40; k++) {
+            int row = random.nextInt(songs.size());
+            for (String text : new String[] {songs.getTitle(row), songs.getArtist(row)}) {
+                int from = random.nextInt(text.length());
+                for (int length = 1; length <= 6 && from + length <= text.length(); length++) {
+                    queries.add(text.substring(from, from + length));
+                }
+                queries.add(text.substring(0, Math.min(text.length(), 1 + random.nextInt(8))));
+            }
+        }
+        return new ArrayList<>(queries);
+    }
+
+    private Set<Integer> scan(SongTable songs, String query, boolean prefix) {
+        String text = query.toLowerCase();
+        Set<Integer> rows = new TreeSet<>();
+        for (int row = 0; row < songs.size(); row++) {
+            String title = songs.getTitle(row).toLowerCase();
+            String artist = songs.getArtist(row).toLowerCase();
+            if (prefix ? title.startsWith(text) || artist.startsWith(text) : title.contains(text) || artist.contains(text)) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private List<Integer> box(int[] rows) {
+        List<Integer> boxed = new ArrayList<>();
+        for (int row : rows) {
+            boxed.add(row);
+        }
+        return boxed;
+    }
+
+    private List<String> ids(List<Song> songs) {
+        return songs.stream().map(Song::getSongId).toList();
+    }
+}
@@ -0,0 +1,87 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of resolving one recommendation response: the seed id plus ten result ids,
+ * each turned into a title and artist. With the id index this should stay flat as
+ * the catalog grows; the linear scan it replaced is kept here as a baseline.
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=SongLookupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SongLookupBenchmark {
+    private static final int RESULTS = 10;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private GraphBuilder builder;
+    private String[][] requests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        builder = new GraphBuilder();
+        List<Song> songs = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            songs.add(new Song("S" + i, "Title " + i, "Artist " + random.nextInt(catalogSize / 10 + 1),
+                    "English", "Pop", 2020, "Energetic", 60 + random.nextInt(91), random.nextDouble()));
+        }
+        builder.addSongs(songs);
+        requests = new String[1024][RESULTS + 1];
+        for (String[] request : requests) {
+            for (int k = 0; k < request.length; k++) {
+                request[k] = "S" + random.nextInt(catalogSize);
+            }
+        }
+    }
+
+    @Benchmark
+    public void indexedLookup(Blackhole blackhole) {
+        SongTable songs = builder.getSongTable();
+        for (String songId : nextRequest()) {
+            int index = builder.getSongIndex(songId);
+            blackhole.consume(songs.getTitle(index));
+            blackhole.consume(songs.getArtist(index));
+        }
+    }
+
+    @Benchmark
+    public void linearScanLookup(Blackhole blackhole) {
+        SongTable songs = builder.getSongTable();
+        for (String songId : nextRequest()) {
+            for (int index = 0; index < songs.size(); index++) {
+                if (songs.getSongId(index).equals(songId)) {
+                    blackhole.consume(songs.getTitle(index));
+                    blackhole.consume(songs.getArtist(index));
+                    break;
+                }
+            }
+        }
+    }
+
+    private String[] nextRequest() {
+        next = (next + 1) & (requests.length - 1);
+        return requests[next];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SongLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
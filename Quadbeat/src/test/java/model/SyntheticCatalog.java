@@ -0,0 +1,219 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates song catalogs of any size in the shape of songs_dataset.csv, for benchmarks.
+ * The 1,000-row sample has 60 titles, 3 moods and uniform tempos; these catalogs follow
+ * the cardinalities of a real one instead:
+ * - artists with a log-normal number of songs each (about 11 on average, at most 400),
+ *   each mostly sticking to one genre and language
+ * - 48 genres and 12 moods, Zipf-skewed, with each genre leaning towards a few moods
+ * - tempos spread around a per-genre centre, popularity skewed towards the low end and
+ *   correlated within an artist, release years skewed towards recent ones
+ * - titles of one to four words from a 2,000-word vocabulary, so search terms repeat
+ *
+ * The same size and seed always give the same catalog.
+ *
+ * Run with: java -cp target/test-classes:target/classes model.SyntheticCatalog &lt;size&gt; &lt;csv path&gt; [seed]
+ */
+public final class SyntheticCatalog {
+    public static final String[] GENRES = {
+            "Pop", "Hip-Hop", "Rock", "Dance", "Romantic", "R&B", "Electronic", "Indie", "Latin", "Country",
+            "Sad", "Soul", "Jazz", "Classical", "Metal", "Reggaeton", "Folk", "K-Pop", "Punk", "Blues",
+            "Funk", "Disco-Pop", "Synth-pop", "House", "Techno", "Trap", "Ambient", "Lo-fi", "Gospel", "Reggae",
+            "Dancehall", "Afrobeats", "Bhangra", "Ghazal", "Qawwali", "Sufi", "Devotional", "Patriotic",
+            "Country-Rap", "Pop rock", "Dance-pop", "Drum and Bass", "Dubstep", "Trance", "Grunge", "Ska",
+            "Bossa Nova", "Opera"};
+    public static final String[] MOODS = {
+            "Energetic", "Neutral", "Melancholy", "Happy", "Romantic", "Chill", "Dark", "Uplifting",
+            "Aggressive", "Dreamy", "Nostalgic", "Calm"};
+    private static final String[] LANGUAGES = {"English", "Hindi", "Spanish", "Korean", "Portuguese", "Punjabi",
+            "French", "Japanese", "German", "Tamil"};
+    private static final String[] SYLLABLES = {"la", "mo", "ri", "ka", "zen", "tu", "vel", "shi", "dor", "an",
+            "qui", "be", "ro", "sa", "ny", "gal", "pe", "ko", "mi", "tar", "lu", "en", "sol", "da", "ve"};
+    private static final String[] VARIATIONS = {" (Remix)", " - Live", " - Acoustic", " (Radio Edit)", " 2.0",
+            " (Reprise)", " - Unplugged", " (Extended)"};
+    private static final int VOCABULARY = 2_000;
+    private static final int MAX_SONGS_PER_ARTIST = 400;
+
+    private SyntheticCatalog() {
+    }
+
+    public static List<Song> generate(int size, long seed) {
+        Random random = new Random(seed);
+        String[] words = vocabulary(random);
+        Zipf genreRank = new Zipf(GENRES.length, 1.0);
+        Zipf moodRank = new Zipf(MOODS.length, 1.2);
+        Zipf languageRank = new Zipf(LANGUAGES.length, 1.4);
+        Zipf wordRank = new Zipf(words.length, 0.9);
+
+        // Each genre ranks the moods in its own order and has its own tempo centre
+        int[][] genreMoods = new int[GENRES.length][];
+        double[] genreTempos = new double[GENRES.length];
+        for (int genre = 0; genre < GENRES.length; genre++) {
+            genreMoods[genre] = shuffled(MOODS.length, random);
+            genreTempos[genre] = 80 + random.nextInt(81);
+        }
+
+        List<Song> songs = new ArrayList<>(size);
+        List<String> titles = new ArrayList<>();
+        for (int artist = 0; songs.size() < size; artist++) {
+            String name = artistName(artist, words, random);
+            int genre = genreRank.sample(random);
+            String language = LANGUAGES[languageRank.sample(random)];
+            double artistPopularity = Math.pow(random.nextDouble(), 2);
+            int count = Math.min(size - songs.size(), songCount(random));
+            titles.clear();
+            for (int k = 0; k < count; k++) {
+                int songGenre = random.nextDouble() < 0.8 ? genre : genreRank.sample(random);
+                String mood = MOODS[genreMoods[songGenre][moodRank.sample(random)]];
+                double tempo = Math.round(Math.max(50, Math.min(200, genreTempos[songGenre] + random.nextGaussian() * 15)));
+                double popularity = Math.min(1, 0.7 * artistPopularity + 0.3 * Math.pow(random.nextDouble(), 3));
+                int year = Math.max(1960, 2024 - (int) (-12 * Math.log(1 - random.nextDouble())));
+                // About one song in six is a version of one of the artist's earlier titles
+                String title;
+                if (!titles.isEmpty() && random.nextInt(6) == 0) {
+                    title = titles.get(random.nextInt(titles.size())) + VARIATIONS[random.nextInt(VARIATIONS.length)];
+                } else {
+                    title = title(words, wordRank, random);
+                    titles.add(title);
+                }
+                songs.add(new Song(null, title, name, language, GENRES[songGenre], year, mood, tempo, popularity));
+            }
+        }
+
+        // Spread each artist's songs over the catalog, then number them in that order
+        Collections.shuffle(songs, random);
+        int width = Math.max(3, String.valueOf(size).length());
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            songs.set(i, new Song(String.format("S%0" + width + "d", i + 1), song.getTitle(), song.getArtist(),
+                    song.getLanguage(), song.getGenre(), song.getReleaseYear(), song.getMood(), song.getTempo(),
+                    song.getPopularity()));
+        }
+        return songs;
+    }
+
+    /** A GraphBuilder holding a generated catalog, with no graphs built yet. */
+    public static GraphBuilder builder(int size, long seed) {
+        GraphBuilder builder = new GraphBuilder();
+        builder.addSongs(generate(size, seed));
+        return builder;
+    }
+
+    /** Writes a generated catalog to a temporary CSV that is deleted when the JVM exits. */
+    public static Path writeTempCsv(int size, long seed) throws IOException {
+        Path path = Files.createTempFile("quadbeat-" + size + "-", ".csv");
+        path.toFile().deleteOnExit();
+        writeCsv(generate(size, seed), path);
+        return path;
+    }
+
+    public static void writeCsv(List<Song> songs, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("song_id,title,artist,language,genre,release_year,mood,tempo,popularity\n");
+            for (Song song : songs) {
+                writer.write(song.getSongId() + "," + quote(song.getTitle()) + "," + quote(song.getArtist()) + ","
+                        + song.getLanguage() + "," + quote(song.getGenre()) + "," + song.getReleaseYear() + ","
+                        + song.getMood() + "," + (int) song.getTempo() + "," + song.getPopularity() + "\n");
+            }
+        }
+    }
+
+    private static String quote(String field) {
+        return field.indexOf(',') < 0 && field.indexOf('"') < 0 ? field : '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    // Log-normal with a median of 6 and a long tail
+    private static int songCount(Random random) {
+        return (int) Math.min(MAX_SONGS_PER_ARTIST, Math.max(1, Math.round(Math.exp(1.8 + random.nextGaussian()))));
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        for (int k = 0; k < words.length; k++) {
+            StringBuilder word = new StringBuilder();
+            for (int syllables = 1 + random.nextInt(3); syllables > 0; syllables--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            words[k] = word.toString();
+        }
+        return words;
+    }
+
+    private static String title(String[] words, Zipf wordRank, Random random) {
+        StringBuilder title = new StringBuilder(words[wordRank.sample(random)]);
+        for (int k = random.nextInt(4); k > 0; k--) {
+            title.append(' ').append(words[wordRank.sample(random)]);
+        }
+        return title.toString();
+    }
+
+    // Artist names are unique: a word or two from the vocabulary, then the artist number
+    private static String artistName(int artist, String[] words, Random random) {
+        String name = words[random.nextInt(words.length)];
+        if (random.nextBoolean()) {
+            name += " " + words[random.nextInt(words.length)];
+        }
+        return name + " " + Integer.toString(artist, 36).toUpperCase();
+    }
+
+    private static int[] shuffled(int n, Random random) {
+        int[] values = new int[n];
+        for (int k = 0; k < n; k++) {
+            values[k] = k;
+        }
+        for (int k = n - 1; k > 0; k--) {
+            int other = random.nextInt(k + 1);
+            int value = values[k];
+            values[k] = values[other];
+            values[other] = value;
+        }
+        return values;
+    }
+
+    /** Ranks 0..n-1 drawn with probability proportional to 1 / (rank + 1)^exponent. */
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double exponent) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k++) {
+                total += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = total;
+            }
+        }
+
+        int sample(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] <= target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = Integer.parseInt(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        writeCsv(generate(size, seed), Path.of(args[1]));
+    }
+}
@@ -0,0 +1,63 @@
+package model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one BFS, Dijkstra, PPR or ANN search of each graph from a random seed of a generated
+ * catalog, for the top 10 with paths (what an uncached /recommend runs) and for the full
+ * ranking (what GraphBuilder.recommend without a limit returns).
+ *
+ * Run with: mvn -Pbenchmark verify -Djmh.args=TraversalBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TraversalBenchmark {
+
+    @Param({"1000", "10000"})
+    public int catalogSize;
+
+    @Param({"SONG_BASED", "ARTIST_BASED", "MOOD_BASED"})
+    public GraphBuilder.GraphType graph;
+
+    @Param({"BFS", "DIJKSTRA", "PPR", "ANN"})
+    public GraphBuilder.AlgoType algorithm;
+
+    @Param({"10", "2147483647"})
+    public int limit;
+
+    private GraphBuilder builder;
+    private String[] seeds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        builder = SyntheticCatalog.builder(catalogSize, 42);
+        builder.buildAllGraphs();
+        Random random = new Random(7);
+        seeds = new String[1024];
+        for (int k = 0; k < seeds.length; k++) {
+            seeds[k] = builder.getSongTable().getSongId(random.nextInt(catalogSize));
+        }
+    }
+
+    @Benchmark
+    public List<Recommendation> recommend() {
+        next = (next + 1) & (seeds.length - 1);
+        return builder.recommend(seeds[next], graph, algorithm, limit, index -> true, limit != Integer.MAX_VALUE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TraversalBenchmark.class.getSimpleName()).build()).run();
+    }
+}